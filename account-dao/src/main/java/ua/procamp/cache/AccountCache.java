@@ -0,0 +1,72 @@
+package ua.procamp.cache;
+
+import ua.procamp.model.Account;
+
+import java.util.Optional;
+
+/**
+ * {@link AccountCache} keeps accounts loaded by {@link ua.procamp.dao.AccountDaoImpl}, so that lookups by id and by
+ * email can be served without SQL. Implementations should store and return copies of accounts, so that changes made
+ * by a caller do not leak into the cache.
+ */
+public interface AccountCache {
+    /**
+     * Returns a cached account by id.
+     *
+     * @param id account id
+     * @return cached account or empty optional if it is not cached or expired
+     */
+    Optional<Account> getById(Long id);
+
+    /**
+     * Returns a cached account by its natural id, email.
+     *
+     * @param email account email
+     * @return cached account or empty optional if it is not cached or expired
+     */
+    Optional<Account> getByEmail(String email);
+
+    /**
+     * Stores an account that is known to be current, for example the one that was just committed.
+     *
+     * @param account stored account
+     */
+    default void put(Account account) {
+        put(account, startLoad());
+    }
+
+    /**
+     * Returns a stamp that should be taken before an account is loaded from the database and then passed
+     * to {@link #put(Account, long)}.
+     *
+     * @return load stamp
+     */
+    long startLoad();
+
+    /**
+     * Stores an account that was loaded from the database, unless it was evicted after the load had started. In that
+     * case the loaded state may be older than the change that caused eviction, so it is not stored.
+     *
+     * @param account   stored account
+     * @param loadStamp stamp returned by {@link #startLoad()} before the account was loaded
+     */
+    void put(Account account, long loadStamp);
+
+    /**
+     * Removes a cached account with a given id, and its email mapping.
+     *
+     * @param id account id
+     */
+    void evict(Long id);
+
+    void clear();
+
+    CacheStatistics getStatistics();
+
+    /**
+     * Returns a cache that stores nothing, so that every lookup goes to the database.
+     */
+    static AccountCache noCache() {
+        return NoAccountCache.INSTANCE;
+    }
+}
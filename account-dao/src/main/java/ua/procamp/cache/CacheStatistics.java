@@ -0,0 +1,24 @@
+package ua.procamp.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link CacheStatistics} is a snapshot of {@link AccountCache} counters. Evictions count entries removed because
+ * the cache was full or the entry expired, explicit invalidation is not counted.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CacheStatistics {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+
+    public double getHitRatio() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+}
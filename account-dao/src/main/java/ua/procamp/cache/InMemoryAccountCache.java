@@ -0,0 +1,168 @@
+package ua.procamp.cache;
+
+import ua.procamp.model.Account;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * {@link InMemoryAccountCache} is a thread safe {@link AccountCache} that keeps at most {@code maxSize} accounts
+ * and evicts the least recently used one when it is full. An entry expires {@code timeToLive} after it was stored,
+ * which bounds how long a change made bypassing the DAO stays invisible.
+ * <p>
+ * Accounts are copied without their cards, so cards of a cached account are always empty.
+ * <p>
+ * Every eviction gets a new stamp, which is remembered for the evicted id, so that a put of an account whose load
+ * started before the eviction is rejected. At most {@code maxSize} eviction stamps are remembered. When the oldest one
+ * is dropped, puts of every load that started before it are rejected, which may skip caching but never caches a stale
+ * account.
+ */
+public class InMemoryAccountCache implements AccountCache {
+    private final int maxSize;
+    private final Duration timeToLive;
+    private final Clock clock;
+    private final LinkedHashMap<Long, Entry> entriesById;
+    private final Map<String, Long> idsByEmail = new HashMap<>();
+    private final LinkedHashMap<Long, Long> evictionStampsById = new LinkedHashMap<>();
+    private long stamp;
+    // loads started before this stamp may have missed an eviction that is no longer remembered
+    private long oldestValidLoadStamp;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public InMemoryAccountCache(int maxSize, Duration timeToLive) {
+        this(maxSize, timeToLive, Clock.systemUTC());
+    }
+
+    public InMemoryAccountCache(int maxSize, Duration timeToLive, Clock clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size should be positive");
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Cache time to live should be positive");
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.clock = Objects.requireNonNull(clock);
+        this.entriesById = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public synchronized Optional<Account> getById(Long id) {
+        return lookup(id);
+    }
+
+    @Override
+    public synchronized Optional<Account> getByEmail(String email) {
+        return lookup(idsByEmail.get(email));
+    }
+
+    private Optional<Account> lookup(Long id) {
+        Entry entry = id == null ? null : entriesById.get(id);
+        if (entry != null && entry.isExpired(clock.instant())) {
+            remove(id);
+            evictionCount++;
+            entry = null;
+        }
+        if (entry == null) {
+            missCount++;
+            return Optional.empty();
+        }
+        hitCount++;
+        return Optional.of(copyOf(entry.account));
+    }
+
+    @Override
+    public synchronized long startLoad() {
+        return stamp;
+    }
+
+    @Override
+    public synchronized void put(Account account, long loadStamp) {
+        Objects.requireNonNull(account.getId());
+        if (loadStamp < oldestValidLoadStamp || loadStamp < evictionStampsById.getOrDefault(account.getId(), 0L)) {
+            return;
+        }
+        remove(account.getId());
+        entriesById.put(account.getId(), new Entry(copyOf(account), clock.instant().plus(timeToLive)));
+        idsByEmail.put(account.getEmail(), account.getId());
+        evictLeastRecentlyUsed();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<Entry> iterator = entriesById.values().iterator();
+        while (entriesById.size() > maxSize) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            idsByEmail.remove(eldest.account.getEmail(), eldest.account.getId());
+            evictionCount++;
+        }
+    }
+
+    @Override
+    public synchronized void evict(Long id) {
+        remove(id);
+        evictionStampsById.remove(id);
+        evictionStampsById.put(id, ++stamp);
+        if (evictionStampsById.size() > maxSize) {
+            Iterator<Long> iterator = evictionStampsById.values().iterator();
+            oldestValidLoadStamp = iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void remove(Long id) {
+        Entry entry = entriesById.remove(id);
+        if (entry != null) {
+            idsByEmail.remove(entry.account.getEmail(), id);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entriesById.clear();
+        idsByEmail.clear();
+        evictionStampsById.clear();
+        oldestValidLoadStamp = ++stamp;
+    }
+
+    @Override
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hitCount, missCount, evictionCount, entriesById.size());
+    }
+
+    private static Account copyOf(Account account) {
+        Account copy = new Account();
+        copy.setId(account.getId());
+        copy.setFirstName(account.getFirstName());
+        copy.setLastName(account.getLastName());
+        copy.setEmail(account.getEmail());
+        copy.setBirthday(account.getBirthday());
+        copy.setGender(account.getGender());
+        copy.setCreationTime(account.getCreationTime());
+        copy.setBalance(account.getBalance());
+        return copy;
+    }
+
+    private static class Entry {
+        private final Account account;
+        private final Instant expiresAt;
+
+        private Entry(Account account, Instant expiresAt) {
+            this.account = account;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+    }
+}
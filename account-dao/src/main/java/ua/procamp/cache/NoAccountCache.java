@@ -0,0 +1,41 @@
+package ua.procamp.cache;
+
+import ua.procamp.model.Account;
+
+import java.util.Optional;
+
+class NoAccountCache implements AccountCache {
+    static final NoAccountCache INSTANCE = new NoAccountCache();
+
+    @Override
+    public Optional<Account> getById(Long id) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Account> getByEmail(String email) {
+        return Optional.empty();
+    }
+
+    @Override
+    public long startLoad() {
+        return 0;
+    }
+
+    @Override
+    public void put(Account account, long loadStamp) {
+    }
+
+    @Override
+    public void evict(Long id) {
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(0, 0, 0, 0);
+    }
+}
@@ -2,6 +2,9 @@ package ua.procamp.dao;
 
 import ua.procamp.model.Account;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -15,19 +18,49 @@ public interface AccountDao {
      */
     void save(Account account);
 
+    /**
+     * Stores new accounts in one transaction and sets generated ids. Inserts are sent in JDBC batches when the
+     * persistence unit enables batching and does not use identity ids, as the bulk persistence unit does.
+     *
+     * @param accounts new accounts
+     */
+    void saveAll(Collection<Account> accounts);
+
+    /**
+     * Imports accounts read from an iterator without keeping them in a persistence context, so memory use does not
+     * depend on the number of imported accounts. Accounts are committed in chunks, so when the import fails,
+     * chunks committed before the failure stay in the database. Inserts are sent in JDBC batches only when the
+     * persistence unit does not use identity ids, as the bulk persistence unit does.
+     *
+     * @param accounts new accounts, that are read lazily
+     * @return number of imported accounts
+     * @throws IllegalStateException if it is called within a unit of work, whose transaction could not be committed
+     *                               in chunks
+     */
+    long importAll(Iterator<Account> accounts);
+
     /**
      * Returns an {@link Account} instance by its id
      *
      * @param id account id in the database
-     * @return account instance
+     * @return account instance, or {@code null} if there is no account with such id
      */
     Account findById(Long id);
 
+    /**
+     * Returns accounts by ids loading them with one {@code IN} query per batch of ids. Accounts that are cached,
+     * or already loaded by the current {@link ua.procamp.util.UnitOfWork}, are not queried again.
+     *
+     * @param ids account ids
+     * @return found accounts in the order of given ids, ids that do not exist are skipped
+     */
+    List<Account> findAllById(Collection<Long> ids);
+
     /**
      * Returns {@link Account} instance by its email
      *
      * @param email account emails
-     * @return account instance
+     * @return account instance, or {@code null} if there is no account with such email
      */
     Account findByEmail(String email);
 
@@ -38,6 +71,27 @@ public interface AccountDao {
      */
     List<Account> findAll();
 
+    /**
+     * Returns a page of accounts ordered by id. Uses keyset pagination, so the cost of a page does not depend on
+     * how deep it is.
+     *
+     * @param afterId id of the last account of the previous page, {@code null} for the first page
+     * @param limit   maximum number of accounts in the page
+     * @return accounts with id greater than {@code afterId}
+     */
+    List<Account> findPage(Long afterId, int limit);
+
+    /**
+     * Returns a page of accounts ordered by creation time, accounts with the same creation time are ordered by id.
+     * Uses keyset pagination backed by an index on (creation_time, id).
+     *
+     * @param afterCreationTime creation time of the last account of the previous page, {@code null} for the first page
+     * @param afterId           id of the last account of the previous page, {@code null} for the first page
+     * @param limit             maximum number of accounts in the page
+     * @return accounts that follow the given one in (creation time, id) order
+     */
+    List<Account> findPageByCreationTime(LocalDateTime afterCreationTime, Long afterId, int limit);
+
     /**
      * Receives stored {@link Account} instance and updates it in the database
      *
@@ -1,95 +1,302 @@
 package ua.procamp.dao;
 
+import ua.procamp.cache.AccountCache;
 import ua.procamp.exception.AccountDaoException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
 import ua.procamp.model.Account;
+import ua.procamp.util.EntityManagerUtil;
+import ua.procamp.util.UnitOfWork;
 
-import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 import static java.util.Objects.isNull;
+import static java.util.stream.Collectors.toList;
 
 public class AccountDaoImpl implements AccountDao {
+    // number of ids bound to one IN query by findAllById
+    private static final int MULTI_LOAD_BATCH_SIZE = 500;
+    // number of accounts committed in one transaction by importAll
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
     private EntityManagerFactory emf;
+    private EntityManagerUtil emUtil;
+    private AccountCache cache;
 
+    /**
+     * Each method uses its own entity manager and transaction, unless it is called within a
+     * {@link UnitOfWork} of the same factory. Read methods do not flush the persistence context.
+     */
     public AccountDaoImpl(EntityManagerFactory emf) {
+        this(emf, AccountCache.noCache());
+    }
+
+    /**
+     * Creates a DAO that looks accounts up by id and email in a given cache first. The cache is bypassed within
+     * a read-write {@link UnitOfWork}, so that its reads return managed entities and changes that are not committed
+     * yet are never cached.
+     */
+    public AccountDaoImpl(EntityManagerFactory emf, AccountCache cache) {
         this.emf = emf;
+        this.emUtil = new EntityManagerUtil(emf);
+        this.cache = Objects.requireNonNull(cache);
     }
 
     @Override
     public void save(Account account) {
         Objects.requireNonNull(account);
         requireCorrectAccount(account);
-        EntityManager entityManager = emf.createEntityManager();
-        entityManager.getTransaction().begin();
         try {
-            entityManager.persist(account);
-            entityManager.getTransaction().commit();
+            emUtil.performWithinTx(entityManager -> entityManager.persist(account));
         } catch (Exception e) {
-            entityManager.getTransaction().rollback();
-        } finally {
-            entityManager.close();
+            throw new AccountDaoException(String.format("Cannot save account with email = %s", account.getEmail()), e);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Account> accounts) {
+        Objects.requireNonNull(accounts);
+        accounts.forEach(account -> requireCorrectAccount(Objects.requireNonNull(account)));
+        try {
+            emUtil.performWithinTx(entityManager -> accounts.forEach(entityManager::persist));
+        } catch (Exception e) {
+            throw new AccountDaoException(String.format("Cannot save %d accounts", accounts.size()), e);
+        }
+    }
+
+    /**
+     * Uses a {@link StatelessSession}, which has no persistence context, no dirty checking and no cascades. With
+     * identity ids every account is inserted by its own statement to read its id.
+     */
+    @Override
+    public long importAll(Iterator<Account> accounts) {
+        Objects.requireNonNull(accounts);
+        if (UnitOfWork.current(emf).isPresent()) {
+            throw new IllegalStateException("Accounts cannot be imported within a unit of work");
+        }
+        long importedCount = 0;
+        try (StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                long chunkCount = 0;
+                while (accounts.hasNext()) {
+                    Account account = Objects.requireNonNull(accounts.next());
+                    if (!isCorrectAccount(account)) {
+                        throw new IllegalArgumentException(
+                                String.format("Account with email = %s is incorrect", account.getEmail()));
+                    }
+                    session.insert(account);
+                    if (++chunkCount == IMPORT_CHUNK_SIZE) {
+                        transaction.commit();
+                        importedCount += chunkCount;
+                        chunkCount = 0;
+                        transaction = session.beginTransaction();
+                    }
+                }
+                transaction.commit();
+                importedCount += chunkCount;
+                return importedCount;
+            } catch (Exception e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        } catch (Exception e) {
+            throw new AccountDaoException(String.format("Account import failed after %d imported accounts", importedCount), e);
         }
     }
 
     @Override
     public Account findById(Long id) {
         Objects.requireNonNull(id);
-        EntityManager entityManager = emf.createEntityManager();
-        entityManager.getTransaction().begin();
-        Account result = null;
+        boolean cacheable = isCacheable();
+        if (cacheable) {
+            Optional<Account> cachedAccount = cache.getById(id);
+            if (cachedAccount.isPresent()) {
+                return cachedAccount.get();
+            }
+        }
         try {
-            result = entityManager
-                    .createQuery("select a from Account a where a.id = :id", Account.class)
-                    .setParameter("id", id)
-                    .getSingleResult();
-            entityManager.getTransaction().commit();
+            long loadStamp = cache.startLoad();
+            Account account = emUtil.performReadOnly(entityManager -> entityManager.find(Account.class, id));
+            cacheIfFound(account, cacheable, loadStamp);
+            return account;
         } catch (Exception e) {
-            entityManager.getTransaction().rollback();
-        } finally {
-            entityManager.close();
+            throw new AccountDaoException(String.format("Cannot find account by id = %d", id), e);
+        }
+    }
+
+    @Override
+    public List<Account> findAllById(Collection<Long> ids) {
+        Objects.requireNonNull(ids);
+        ids.forEach(Objects::requireNonNull);
+        boolean cacheable = isCacheable();
+        Map<Long, Account> accountsById = new HashMap<>();
+        List<Long> notCachedIds = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Optional<Account> cachedAccount = cacheable ? cache.getById(id) : Optional.empty();
+            if (cachedAccount.isPresent()) {
+                accountsById.put(id, cachedAccount.get());
+            } else {
+                notCachedIds.add(id);
+            }
+        }
+        if (!notCachedIds.isEmpty()) {
+            try {
+                long loadStamp = cache.startLoad();
+                emUtil.performReadOnly(entityManager -> entityManager.unwrap(Session.class)
+                        .byMultipleIds(Account.class)
+                        .withBatchSize(MULTI_LOAD_BATCH_SIZE)
+                        .enableSessionCheck(true)
+                        .multiLoad(notCachedIds))
+                        .stream()
+                        .filter(Objects::nonNull)
+                        .forEach(account -> {
+                            cacheIfFound(account, cacheable, loadStamp);
+                            accountsById.put(account.getId(), account);
+                        });
+            } catch (Exception e) {
+                throw new AccountDaoException(String.format("Cannot find %d accounts by ids", notCachedIds.size()), e);
+            }
         }
-        return result;
+        return ids.stream()
+                .distinct()
+                .map(accountsById::get)
+                .filter(Objects::nonNull)
+                .collect(toList());
     }
 
     @Override
     public Account findByEmail(String email) {
         Objects.requireNonNull(email);
-        EntityManager entityManager = emf.createEntityManager();
-        entityManager.getTransaction().begin();
-        Account result = null;
+        boolean cacheable = isCacheable();
+        if (cacheable) {
+            Optional<Account> cachedAccount = cache.getByEmail(email);
+            if (cachedAccount.isPresent()) {
+                return cachedAccount.get();
+            }
+        }
         try {
-            result = entityManager
+            long loadStamp = cache.startLoad();
+            Account account = emUtil.performReadOnly(entityManager -> entityManager
                     .createQuery("select a from Account a where a.email = :email", Account.class)
                     .setParameter("email", email)
-                    .getSingleResult();
-            entityManager.getTransaction().commit();
+                    .getResultList().stream()
+                    .findAny()
+                    .orElse(null));
+            cacheIfFound(account, cacheable, loadStamp);
+            return account;
         } catch (Exception e) {
-            entityManager.getTransaction().rollback();
-        } finally {
-            entityManager.close();
+            throw new AccountDaoException(String.format("Cannot find account by email = %s", email), e);
         }
-        return result;
+    }
+
+    private boolean isCacheable() {
+        return UnitOfWork.current(emf).map(UnitOfWork::isReadOnly).orElse(true);
+    }
+
+    /**
+     * The load stamp makes the cache reject an account whose load started before the account was evicted, so that
+     * a reader that loaded the state before an update cannot put it back after the update evicted it.
+     */
+    private void cacheIfFound(Account account, boolean cacheable, long loadStamp) {
+        if (account != null && cacheable) {
+            cache.put(account, loadStamp);
+        }
+    }
+
+    /**
+     * Evicts a changed account right away, and once more after the transaction completes, so that an account loaded
+     * by another thread before the change is committed is rejected by the cache.
+     */
+    private void evictFromCache(Long id) {
+        cache.evict(id);
+        UnitOfWork.current(emf).ifPresent(unitOfWork -> unitOfWork.afterCompletion(() -> cache.evict(id)));
     }
 
     @Override
     public List<Account> findAll() {
-        EntityManager entityManager = emf.createEntityManager();
-        entityManager.getTransaction().begin();
-        List<Account> result = new ArrayList<>();
         try {
-            result = entityManager
+            return emUtil.performReadOnly(entityManager -> entityManager
                     .createQuery("select a from Account a", Account.class)
-                    .getResultList();
-            entityManager.getTransaction().commit();
+                    .getResultList());
         } catch (Exception e) {
-            entityManager.getTransaction().rollback();
-        } finally {
-            entityManager.close();
+            throw new AccountDaoException("Cannot find all accounts", e);
+        }
+    }
+
+    @Override
+    public List<Account> findPage(Long afterId, int limit) {
+        checkPageLimit(limit);
+        try {
+            return emUtil.performReadOnly(entityManager -> {
+                CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+                CriteriaQuery<Account> query = cb.createQuery(Account.class);
+                Root<Account> account = query.from(Account.class);
+                Path<Long> id = account.get("id");
+                if (afterId != null) {
+                    query.where(cb.greaterThan(id, afterId));
+                }
+                query.orderBy(cb.asc(id));
+                return entityManager.createQuery(query)
+                        .setMaxResults(limit)
+                        .getResultList();
+            });
+        } catch (Exception e) {
+            throw new AccountDaoException(String.format("Cannot find accounts page after id = %d", afterId), e);
+        }
+    }
+
+    @Override
+    public List<Account> findPageByCreationTime(LocalDateTime afterCreationTime, Long afterId, int limit) {
+        checkPageLimit(limit);
+        if (isNull(afterCreationTime) != isNull(afterId)) {
+            throw new IllegalArgumentException("Creation time and id of the last account should be both set or both null");
+        }
+        try {
+            return emUtil.performReadOnly(entityManager -> {
+                CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+                CriteriaQuery<Account> query = cb.createQuery(Account.class);
+                Root<Account> account = query.from(Account.class);
+                Path<LocalDateTime> creationTime = account.get("creationTime");
+                Path<Long> id = account.get("id");
+                if (afterId != null) {
+                    query.where(cb.or(
+                            cb.greaterThan(creationTime, afterCreationTime),
+                            cb.and(cb.equal(creationTime, afterCreationTime), cb.greaterThan(id, afterId))));
+                }
+                query.orderBy(cb.asc(creationTime), cb.asc(id));
+                return entityManager.createQuery(query)
+                        .setMaxResults(limit)
+                        .getResultList();
+            });
+        } catch (Exception e) {
+            throw new AccountDaoException(String.format("Cannot find accounts page after creation time = %s, id = %d",
+                    afterCreationTime, afterId), e);
+        }
+    }
+
+    private void checkPageLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit should be positive");
         }
-        return result;
     }
 
     @Override
@@ -97,41 +304,42 @@ public class AccountDaoImpl implements AccountDao {
         Objects.requireNonNull(account);
         Objects.requireNonNull(account.getId());
         requireCorrectAccount(account);
-        EntityManager entityManager = emf.createEntityManager();
-        entityManager.getTransaction().begin();
         try {
-            Account acc = entityManager.merge(account);
-            entityManager.persist(acc);
-            entityManager.getTransaction().commit();
+            emUtil.performWithinTx(entityManager -> entityManager.merge(account));
         } catch (Exception e) {
-            entityManager.getTransaction().rollback();
+            throw new AccountDaoException(String.format("Cannot update account with id = %d", account.getId()), e);
         } finally {
-            entityManager.close();
+            evictFromCache(account.getId());
         }
     }
 
     private void requireCorrectAccount(Account account) {
-        if (isNull(account.getFirstName()) || isNull(account.getLastName()) ||
-                isNull(account.getEmail()) || isNull(account.getBirthday()) ||
-                isNull(account.getGender()) || isNull(account.getCreationTime())) {
+        if (!isCorrectAccount(account)) {
             throw new AccountDaoException("Attempt to incorrect updating", new IllegalArgumentException());
         }
     }
 
+    private boolean isCorrectAccount(Account account) {
+        return !(isNull(account.getFirstName()) || isNull(account.getLastName()) ||
+                isNull(account.getEmail()) || isNull(account.getBirthday()) ||
+                isNull(account.getGender()) || isNull(account.getCreationTime()));
+    }
+
     @Override
     public void remove(Account account) {
         Objects.requireNonNull(account);
-        EntityManager entityManager = emf.createEntityManager();
-        entityManager.getTransaction().begin();
+        Objects.requireNonNull(account.getId());
         try {
-            Account acc = entityManager.find(Account.class, account.getId());
-            entityManager.remove(acc);
-            entityManager.getTransaction().commit();
+            emUtil.performWithinTx(entityManager -> {
+                Account managedAccount = entityManager.find(Account.class, account.getId());
+                if (managedAccount != null) {
+                    entityManager.remove(managedAccount);
+                }
+            });
         } catch (Exception e) {
-            entityManager.getTransaction().rollback();
+            throw new AccountDaoException(String.format("Cannot remove account with id = %d", account.getId()), e);
         } finally {
-            entityManager.close();
+            evictFromCache(account.getId());
         }
     }
 }
-
@@ -0,0 +1,67 @@
+package ua.procamp.dao;
+
+import ua.procamp.model.Account;
+import ua.procamp.util.concurrent.DaoExecutor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AsyncAccountDao} runs {@link AccountDao} calls on a {@link DaoExecutor} and returns their results as
+ * {@link CompletableFuture}s. Failures of the wrapped DAO complete the futures exceptionally.
+ * <p>
+ * Calls run on executor threads, so they never join a {@link ua.procamp.util.UnitOfWork} bound to the calling
+ * thread, every call runs in its own transaction.
+ */
+public class AsyncAccountDao {
+    private final AccountDao accountDao;
+    private final DaoExecutor executor;
+
+    public AsyncAccountDao(AccountDao accountDao, DaoExecutor executor) {
+        this.accountDao = Objects.requireNonNull(accountDao);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    public CompletableFuture<Void> save(Account account) {
+        return executor.run(() -> accountDao.save(account));
+    }
+
+    public CompletableFuture<Void> saveAll(Collection<Account> accounts) {
+        return executor.run(() -> accountDao.saveAll(accounts));
+    }
+
+    public CompletableFuture<Account> findById(Long id) {
+        return executor.supply(() -> accountDao.findById(id));
+    }
+
+    public CompletableFuture<List<Account>> findAllById(Collection<Long> ids) {
+        return executor.supply(() -> accountDao.findAllById(ids));
+    }
+
+    public CompletableFuture<Account> findByEmail(String email) {
+        return executor.supply(() -> accountDao.findByEmail(email));
+    }
+
+    public CompletableFuture<List<Account>> findAll() {
+        return executor.supply(accountDao::findAll);
+    }
+
+    public CompletableFuture<List<Account>> findPage(Long afterId, int limit) {
+        return executor.supply(() -> accountDao.findPage(afterId, limit));
+    }
+
+    public CompletableFuture<List<Account>> findPageByCreationTime(LocalDateTime afterCreationTime, Long afterId, int limit) {
+        return executor.supply(() -> accountDao.findPageByCreationTime(afterCreationTime, afterId, limit));
+    }
+
+    public CompletableFuture<Void> update(Account account) {
+        return executor.run(() -> accountDao.update(account));
+    }
+
+    public CompletableFuture<Void> remove(Account account) {
+        return executor.run(() -> accountDao.remove(account));
+    }
+}
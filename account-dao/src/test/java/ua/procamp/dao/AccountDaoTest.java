@@ -1,9 +1,16 @@
 package ua.procamp.dao;
 
+import ua.procamp.cache.AccountCache;
+import ua.procamp.cache.CacheStatistics;
+import ua.procamp.cache.InMemoryAccountCache;
 import ua.procamp.exception.AccountDaoException;
 import ua.procamp.model.Account;
 import ua.procamp.util.TestDataGenerator;
+import ua.procamp.util.UnitOfWork;
+import ua.procamp.util.concurrent.DaoExecutor;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -17,8 +24,18 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -52,6 +69,116 @@ class AccountDaoTest {
 
     }
 
+    @Test
+    void testSaveAllAccounts() {
+        List<Account> accounts = TestDataGenerator.generateAccountList(5);
+
+        accountDao.saveAll(accounts);
+
+        assertThat(accounts.stream().allMatch(account -> account.getId() != null && isSaved(account)), is(true));
+    }
+
+    @Test
+    void testSaveAllAccountsInBatches() {
+        EntityManagerFactory bulkEmf = Persistence.createEntityManagerFactory("SingleAccountEntityH2Bulk");
+        try {
+            Statistics statistics = bulkEmf.unwrap(SessionFactory.class).getStatistics();
+            statistics.setStatisticsEnabled(true);
+            List<Account> accounts = TestDataGenerator.generateAccountList(100);
+            // generated emails are not guaranteed to be unique
+            for (int i = 0; i < accounts.size(); i++) {
+                accounts.get(i).setEmail(i + "." + accounts.get(i).getEmail());
+            }
+
+            new AccountDaoImpl(bulkEmf).saveAll(accounts);
+
+            assertThat(accounts.stream().allMatch(account -> account.getId() != null), is(true));
+            // two sequence calls for 50 ids each and two batched inserts
+            assertThat(statistics.getPrepareStatementCount(), equalTo(4L));
+        } finally {
+            bulkEmf.close();
+        }
+    }
+
+    @Test
+    void testAsyncSaveAndFindById() {
+        List<Account> accounts = TestDataGenerator.generateAccountList(10);
+
+        try (DaoExecutor executor = DaoExecutor.create(4)) {
+            AsyncAccountDao asyncAccountDao = new AsyncAccountDao(accountDao, executor);
+            CompletableFuture.allOf(accounts.stream()
+                    .map(asyncAccountDao::save)
+                    .toArray(CompletableFuture[]::new)).join();
+            List<Account> foundAccounts = accounts.stream()
+                    .map(account -> asyncAccountDao.findById(account.getId()))
+                    .collect(toList()).stream()
+                    .map(CompletableFuture::join)
+                    .collect(toList());
+
+            assertThat(foundAccounts, equalTo(accounts));
+        }
+    }
+
+    @Test
+    void testImportAllAccounts() {
+        List<Account> accounts = TestDataGenerator.generateAccountList(10);
+
+        long importedCount = accountDao.importAll(accounts.iterator());
+
+        assertThat(importedCount, is(10L));
+        assertThat(accounts.stream().allMatch(account -> account.getId() != null && isSaved(account)), is(true));
+    }
+
+    @Test
+    void testImportAllAccountsInBatches() {
+        EntityManagerFactory bulkEmf = Persistence.createEntityManagerFactory("SingleAccountEntityH2Bulk");
+        try {
+            Statistics statistics = bulkEmf.unwrap(SessionFactory.class).getStatistics();
+            statistics.setStatisticsEnabled(true);
+            List<Account> accounts = TestDataGenerator.generateAccountList(100);
+            // generated emails are not guaranteed to be unique
+            for (int i = 0; i < accounts.size(); i++) {
+                accounts.get(i).setEmail(i + "." + accounts.get(i).getEmail());
+            }
+
+            long importedCount = new AccountDaoImpl(bulkEmf).importAll(accounts.iterator());
+
+            assertThat(importedCount, is(100L));
+            // two sequence calls for 50 ids each and two batched inserts
+            assertThat(statistics.getPrepareStatementCount(), equalTo(4L));
+        } finally {
+            bulkEmf.close();
+        }
+    }
+
+    @Test
+    void testImportAllStopsOnInvalidAccount() {
+        List<Account> accounts = TestDataGenerator.generateAccountList(3);
+        accounts.get(2).setEmail(null);
+
+        try {
+            accountDao.importAll(accounts.iterator());
+            fail("AccountDaoException should be thrown");
+        } catch (Exception e) {
+            assertEquals(e.getClass(), AccountDaoException.class);
+            assertEquals(e.getCause().getClass(), IllegalArgumentException.class);
+        }
+        assertThat(accounts.stream().anyMatch(account -> account.getId() != null && isSaved(account)), is(false));
+    }
+
+    @Test
+    void testImportAllWithinUnitOfWorkIsRejected() {
+        List<Account> accounts = TestDataGenerator.generateAccountList(1);
+
+        try (UnitOfWork ignored = UnitOfWork.begin(emf)) {
+            accountDao.importAll(accounts.iterator());
+            fail("IllegalStateException should be thrown");
+        } catch (Exception e) {
+            assertEquals(e.getClass(), IllegalStateException.class);
+        }
+        assertThat(accounts.get(0).getId(), nullValue());
+    }
+
     private void saveTestAccount(Account account) {
         EntityManager entityManager = emf.createEntityManager();
         entityManager.unwrap(Session.class).doWork(connection -> {
@@ -95,6 +222,17 @@ class AccountDaoTest {
         assertEquals(account, foundAccount);
     }
 
+    @Test
+    void testFindAllAccountsById() {
+        List<Account> accounts = TestDataGenerator.generateAccountList(3);
+        accounts.forEach(this::saveTestAccount);
+        List<Long> ids = List.of(accounts.get(2).getId(), Long.MAX_VALUE, accounts.get(0).getId(), accounts.get(1).getId());
+
+        List<Account> foundAccounts = accountDao.findAllById(ids);
+
+        assertThat(foundAccounts, contains(accounts.get(2), accounts.get(0), accounts.get(1)));
+    }
+
     @Test
     void testFindAccountByEmail() {
         Account account = TestDataGenerator.generateAccount();
@@ -115,6 +253,43 @@ class AccountDaoTest {
         assertThat(accounts, everyItem(isIn(foundAccounts)));
     }
 
+    @Test
+    void testFindAccountsPage() {
+        List<Account> accounts = TestDataGenerator.generateAccountList(5);
+        accounts.forEach(this::saveTestAccount);
+        List<Account> allAccounts = accountDao.findAll();
+        allAccounts.sort(Comparator.comparing(Account::getId));
+
+        List<Account> pagedAccounts = new ArrayList<>();
+        List<Account> page = accountDao.findPage(null, 2);
+        while (!page.isEmpty()) {
+            assertThat(page.size(), lessThanOrEqualTo(2));
+            pagedAccounts.addAll(page);
+            page = accountDao.findPage(page.get(page.size() - 1).getId(), 2);
+        }
+
+        assertEquals(allAccounts, pagedAccounts);
+    }
+
+    @Test
+    void testFindAccountsPageByCreationTime() {
+        List<Account> accounts = TestDataGenerator.generateAccountList(5);
+        accounts.forEach(this::saveTestAccount);
+        List<Account> allAccounts = accountDao.findAll();
+        allAccounts.sort(Comparator.comparing(Account::getCreationTime).thenComparing(Account::getId));
+
+        List<Account> pagedAccounts = new ArrayList<>();
+        List<Account> page = accountDao.findPageByCreationTime(null, null, 3);
+        while (!page.isEmpty()) {
+            assertThat(page.size(), lessThanOrEqualTo(3));
+            pagedAccounts.addAll(page);
+            Account last = page.get(page.size() - 1);
+            page = accountDao.findPageByCreationTime(last.getCreationTime(), last.getId(), 3);
+        }
+
+        assertEquals(allAccounts, pagedAccounts);
+    }
+
     @Test
     void testUpdateAccount() {
         Account account = TestDataGenerator.generateAccount();
@@ -179,4 +354,249 @@ class AccountDaoTest {
         }
     }
 
+    @Test
+    public void testSaveAccountWithDuplicateEmail() {
+        Account account = TestDataGenerator.generateAccount();
+        saveTestAccount(account);
+        Account duplicateAccount = TestDataGenerator.generateAccount();
+        duplicateAccount.setEmail(account.getEmail());
+
+        try {
+            accountDao.save(duplicateAccount);
+            fail("AccountDaoException should be thrown");
+        } catch (Exception e) {
+            assertEquals(e.getClass(), AccountDaoException.class);
+        }
+    }
+
+    @Test
+    public void testFindNotExistingAccount() {
+        assertThat(accountDao.findById(Long.MAX_VALUE), nullValue());
+        assertThat(accountDao.findByEmail("not.existing@email.com"), nullValue());
+    }
+
+    @Test
+    public void testUnitOfWorkSharesEntityManager() {
+        Account account = TestDataGenerator.generateAccount();
+
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(emf)) {
+            accountDao.save(account);
+            Account foundAccount = accountDao.findById(account.getId());
+            Account foundByEmailAccount = accountDao.findByEmail(account.getEmail());
+
+            assertThat(foundAccount, sameInstance(account));
+            assertThat(foundByEmailAccount, sameInstance(account));
+            assertThat(UnitOfWork.current(emf).isPresent(), is(true));
+        }
+
+        assertThat(UnitOfWork.current(emf).isPresent(), is(false));
+        assertThat(isSaved(account), is(false));
+    }
+
+    @Test
+    public void testUnitOfWorkCommit() {
+        Account account = TestDataGenerator.generateAccount();
+        saveTestAccount(account);
+        BigDecimal newBalance = account.getBalance().add(BigDecimal.TEN);
+
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(emf)) {
+            Account foundAccount = accountDao.findById(account.getId());
+            foundAccount.setBalance(newBalance);
+            accountDao.update(foundAccount);
+            unitOfWork.commit();
+        }
+        account.setBalance(newBalance);
+
+        assertThat(isBalanceUpdated(account), is(true));
+    }
+
+    @Test
+    public void testReadOnlyUnitOfWorkRejectsWrites() {
+        Account account = TestDataGenerator.generateAccount();
+
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(emf)) {
+            accountDao.save(account);
+            fail("AccountDaoException should be thrown");
+        } catch (Exception e) {
+            assertEquals(e.getClass(), AccountDaoException.class);
+        }
+    }
+
+    @Test
+    public void testFindAccountInCache() {
+        AccountCache cache = new InMemoryAccountCache(10, Duration.ofMinutes(1));
+        AccountDao cachedAccountDao = new AccountDaoImpl(emf, cache);
+        Account account = TestDataGenerator.generateAccount();
+        saveTestAccount(account);
+
+        Account loadedAccount = cachedAccountDao.findById(account.getId());
+        Account cachedAccount = cachedAccountDao.findById(account.getId());
+        Account cachedByEmailAccount = cachedAccountDao.findByEmail(account.getEmail());
+        CacheStatistics statistics = cache.getStatistics();
+
+        assertEquals(account, cachedAccount);
+        assertEquals(account, cachedByEmailAccount);
+        assertThat(cachedAccount, not(sameInstance(loadedAccount)));
+        assertThat(statistics.getHitCount(), is(2L));
+        assertThat(statistics.getMissCount(), is(1L));
+        assertThat(statistics.getSize(), is(1));
+    }
+
+    @Test
+    public void testCacheIsInvalidatedOnUpdateAndRemove() {
+        AccountCache cache = new InMemoryAccountCache(10, Duration.ofMinutes(1));
+        AccountDao cachedAccountDao = new AccountDaoImpl(emf, cache);
+        Account account = TestDataGenerator.generateAccount();
+        saveTestAccount(account);
+
+        Account cachedAccount = cachedAccountDao.findById(account.getId());
+        cachedAccount.setBalance(cachedAccount.getBalance().add(BigDecimal.TEN));
+        cachedAccountDao.update(cachedAccount);
+        Account updatedAccount = cachedAccountDao.findByEmail(account.getEmail());
+        cachedAccountDao.remove(updatedAccount);
+        Account removedAccount = cachedAccountDao.findById(account.getId());
+
+        assertThat(updatedAccount.getBalance(), comparesEqualTo(cachedAccount.getBalance()));
+        assertThat(removedAccount, nullValue());
+        assertThat(cache.getStatistics().getHitCount(), is(0L));
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsedAndExpiredAccounts() {
+        MutableClock clock = new MutableClock();
+        AccountCache cache = new InMemoryAccountCache(2, Duration.ofMinutes(1), clock);
+        List<Account> accounts = TestDataGenerator.generateAccountList(3);
+        for (int i = 0; i < accounts.size(); i++) {
+            accounts.get(i).setId((long) i);
+        }
+
+        cache.put(accounts.get(0));
+        cache.put(accounts.get(1));
+        cache.getById(0L);
+        cache.put(accounts.get(2));
+        boolean leastRecentlyUsedCached = cache.getByEmail(accounts.get(1).getEmail()).isPresent();
+        clock.advance(Duration.ofMinutes(1));
+        boolean expiredCached = cache.getById(0L).isPresent();
+        CacheStatistics statistics = cache.getStatistics();
+
+        assertThat(leastRecentlyUsedCached, is(false));
+        assertThat(expiredCached, is(false));
+        assertThat(statistics.getEvictionCount(), is(2L));
+        assertThat(statistics.getSize(), is(1));
+    }
+
+    @Test
+    public void testCacheRejectsAccountLoadedBeforeEviction() {
+        AccountCache cache = new InMemoryAccountCache(10, Duration.ofMinutes(1));
+        Account account = TestDataGenerator.generateAccount();
+        account.setId(1L);
+
+        long staleLoadStamp = cache.startLoad();
+        cache.evict(account.getId());
+        cache.put(account, staleLoadStamp);
+        boolean staleAccountCached = cache.getById(account.getId()).isPresent();
+        cache.put(account, cache.startLoad());
+        boolean freshAccountCached = cache.getById(account.getId()).isPresent();
+
+        assertThat(staleAccountCached, is(false));
+        assertThat(freshAccountCached, is(true));
+    }
+
+    @Test
+    public void testCacheIsNotPopulatedByReaderInterleavedWithUpdate() {
+        InterleavingAccountCache cache = new InterleavingAccountCache(new InMemoryAccountCache(10, Duration.ofMinutes(1)));
+        AccountDao cachedAccountDao = new AccountDaoImpl(emf, cache);
+        Account account = TestDataGenerator.generateAccount();
+        saveTestAccount(account);
+        cache.beforeNextPut(() -> {
+            Account changedAccount = accountDao.findById(account.getId());
+            changedAccount.setBalance(changedAccount.getBalance().add(BigDecimal.TEN));
+            cachedAccountDao.update(changedAccount);
+        });
+
+        Account staleAccount = cachedAccountDao.findById(account.getId());
+        Account foundAccount = cachedAccountDao.findById(account.getId());
+
+        assertThat(foundAccount.getBalance(), comparesEqualTo(staleAccount.getBalance().add(BigDecimal.TEN)));
+        assertThat(cache.getStatistics().getHitCount(), is(0L));
+    }
+
+    /**
+     * Runs a given action right before the next account is stored, which happens after a reader has loaded it.
+     */
+    private static class InterleavingAccountCache implements AccountCache {
+        private final AccountCache delegate;
+        private Runnable beforePut;
+
+        InterleavingAccountCache(AccountCache delegate) {
+            this.delegate = delegate;
+        }
+
+        void beforeNextPut(Runnable action) {
+            beforePut = action;
+        }
+
+        @Override
+        public Optional<Account> getById(Long id) {
+            return delegate.getById(id);
+        }
+
+        @Override
+        public Optional<Account> getByEmail(String email) {
+            return delegate.getByEmail(email);
+        }
+
+        @Override
+        public long startLoad() {
+            return delegate.startLoad();
+        }
+
+        @Override
+        public void put(Account account, long loadStamp) {
+            Runnable action = beforePut;
+            beforePut = null;
+            if (action != null) {
+                action.run();
+            }
+            delegate.put(account, loadStamp);
+        }
+
+        @Override
+        public void evict(Long id) {
+            delegate.evict(id);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+
+        @Override
+        public CacheStatistics getStatistics() {
+            return delegate.getStatistics();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.now();
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
 }
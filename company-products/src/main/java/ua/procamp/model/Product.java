@@ -14,7 +14,8 @@ import javax.persistence.*;
 @Entity(name = "product")
 public class Product {
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     @EqualsAndHashCode.Include
     private Long id;
     @Column(nullable = false)
@@ -0,0 +1,24 @@
+package ua.procamp.data;
+
+import ua.procamp.model.Account;
+import ua.procamp.util.bulk.BulkLoader;
+import ua.procamp.util.bulk.TableMapping;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * {@link AccountBulkLoader} loads accounts into the {@code account} table created by {@code AccountDbInitializer}
+ * using {@code COPY} on PostgreSQL. That table does not generate ids, so every account should have an id.
+ */
+public class AccountBulkLoader extends BulkLoader<Account> {
+    public static final TableMapping<Account> ACCOUNT_TABLE = new TableMapping<>("account",
+            List.of("id", "email", "first_name", "last_name", "gender", "birthday", "balance", "creation_time"),
+            account -> new Object[]{account.getId(), account.getEmail(), account.getFirstName(),
+                    account.getLastName(), account.getGender(), account.getBirthday(), account.getBalance(),
+                    account.getCreationTime()});
+
+    public AccountBulkLoader(DataSource dataSource) {
+        super(dataSource, ACCOUNT_TABLE);
+    }
+}
@@ -0,0 +1,141 @@
+package ua.procamp.data;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.procamp.model.Account;
+import ua.procamp.model.Gender;
+import ua.procamp.util.JdbcUtil;
+import ua.procamp.util.bulk.BulkLoadException;
+import ua.procamp.util.bulk.BulkLoadResult;
+import ua.procamp.util.bulk.BulkLoader;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AccountBulkLoaderTest {
+    private static DataSource h2DataSource;
+
+    @BeforeAll
+    public static void init() throws SQLException {
+        h2DataSource = JdbcUtil.createDefaultInMemoryH2DataSource();
+        try (Connection connection = h2DataSource.getConnection()) {
+            Statement createTableStatement = connection.createStatement();
+            createTableStatement.execute("CREATE TABLE IF NOT EXISTS account (\n" +
+                    "  id            BIGINT NOT NULL,\n" +
+                    "  email         VARCHAR(255) NOT NULL,\n" +
+                    "  first_name    VARCHAR(255) NOT NULL,\n" +
+                    "  last_name     VARCHAR(255) NOT NULL,\n" +
+                    "  gender        VARCHAR(255) NOT NULL,\n" +
+                    "  birthday      DATE NOT NULL,\n" +
+                    "  balance       DECIMAL(19, 4) NULL,\n" +
+                    "  creation_time TIMESTAMP NOT NULL DEFAULT now(),\n" +
+                    "\n" +
+                    "  CONSTRAINT account_pk PRIMARY KEY (id),\n" +
+                    "  CONSTRAINT account_email_uq UNIQUE (email)\n" +
+                    ");");
+        }
+    }
+
+    @BeforeEach
+    public void clearTable() throws SQLException {
+        try (Connection connection = h2DataSource.getConnection()) {
+            connection.createStatement().executeUpdate("DELETE FROM account");
+        }
+    }
+
+    @Test
+    public void testLoad() throws SQLException {
+        List<Account> accounts = createAccounts(25);
+
+        BulkLoadResult result = new AccountBulkLoader(h2DataSource).load(accounts);
+        Map<Long, Account> loadedAccounts = findAllAccounts();
+
+        assertThat(result.getRowCount(), equalTo((long) accounts.size()));
+        assertThat(loadedAccounts.size(), equalTo(accounts.size()));
+        for (Account account : accounts) {
+            Account loadedAccount = loadedAccounts.get(account.getId());
+            assertThat(loadedAccount, notNullValue());
+            assertThat(loadedAccount.getEmail(), equalTo(account.getEmail()));
+            assertThat(loadedAccount.getFirstName(), equalTo(account.getFirstName()));
+            assertThat(loadedAccount.getLastName(), equalTo(account.getLastName()));
+            assertThat(loadedAccount.getGender(), equalTo(account.getGender()));
+            assertThat(loadedAccount.getBirthday(), equalTo(account.getBirthday()));
+            assertThat(loadedAccount.getBalance(), comparesEqualTo(account.getBalance()));
+            assertThat(loadedAccount.getCreationTime(), equalTo(account.getCreationTime()));
+        }
+    }
+
+    @Test
+    public void testLoadInSeveralBatches() throws SQLException {
+        List<Account> accounts = createAccounts(7);
+
+        BulkLoadResult result = new BulkLoader<>(h2DataSource, AccountBulkLoader.ACCOUNT_TABLE, 3,
+                BulkLoader.DEFAULT_BUFFER_SIZE).load(accounts.stream());
+
+        assertThat(result.getRowCount(), equalTo((long) accounts.size()));
+        assertThat(findAllAccounts().size(), equalTo(accounts.size()));
+    }
+
+    @Test
+    public void testLoadRollsBackOnError() throws SQLException {
+        List<Account> accounts = createAccounts(4);
+        accounts.get(3).setId(null);
+
+        assertThrows(BulkLoadException.class, () -> new AccountBulkLoader(h2DataSource).load(accounts));
+
+        assertThat(findAllAccounts().entrySet(), empty());
+    }
+
+    private List<Account> createAccounts(int size) {
+        List<Account> accounts = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Account account = new Account();
+            account.setId((long) i);
+            account.setFirstName("First" + i);
+            account.setLastName("Last" + i);
+            account.setEmail("account" + i + "@example.com");
+            account.setGender(i % 2 == 0 ? Gender.FEMALE : Gender.MALE);
+            account.setBirthday(LocalDate.of(1980, 1, 1).plusDays(i));
+            account.setBalance(BigDecimal.valueOf(i * 100L, 2));
+            account.setCreationTime(LocalDateTime.of(2018, 1, 1, 12, 0).plusMinutes(i));
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    private Map<Long, Account> findAllAccounts() throws SQLException {
+        try (Connection connection = h2DataSource.getConnection()) {
+            ResultSet resultSet = connection.createStatement().executeQuery(
+                    "SELECT id, email, first_name, last_name, gender, birthday, balance, creation_time FROM account");
+            Map<Long, Account> accounts = new LinkedHashMap<>();
+            while (resultSet.next()) {
+                Account account = new Account();
+                account.setId(resultSet.getLong("id"));
+                account.setEmail(resultSet.getString("email"));
+                account.setFirstName(resultSet.getString("first_name"));
+                account.setLastName(resultSet.getString("last_name"));
+                account.setGender(Gender.valueOf(resultSet.getString("gender")));
+                account.setBirthday(resultSet.getDate("birthday").toLocalDate());
+                account.setBalance(resultSet.getBigDecimal("balance"));
+                account.setCreationTime(resultSet.getTimestamp("creation_time").toLocalDateTime());
+                accounts.put(account.getId(), account);
+            }
+            return accounts;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package ua.procamp.util;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.postgresql.ds.PGSimpleDataSource;
+import ua.procamp.util.pool.PoolConfig;
+import ua.procamp.util.pool.PooledDataSource;
 
 import javax.sql.DataSource;
 import java.util.Map;
@@ -46,6 +48,28 @@ public class JdbcUtil {
         return String.format("jdbc:postgresql://localhost:5432/%s", databaseName);
     }
 
+    public static PooledDataSource createDefaultPooledPostgresDataSource() {
+        return createPooledDataSource(createDefaultPostgresDataSource(), PoolConfig.defaultConfig());
+    }
+
+    /**
+     * Creates a connection pool for PostgreSQL or H2 database, depending on a given JDBC url
+     */
+    public static PooledDataSource createPooledDataSource(String url, String username, String pass) {
+        return createPooledDataSource(url, username, pass, PoolConfig.defaultConfig());
+    }
+
+    public static PooledDataSource createPooledDataSource(String url, String username, String pass, PoolConfig config) {
+        DataSource dataSource = url.startsWith("jdbc:h2:")
+                ? createInMemoryH2DataSource(url, username, pass)
+                : createPostgresDataSource(url, username, pass);
+        return createPooledDataSource(dataSource, config);
+    }
+
+    public static PooledDataSource createPooledDataSource(DataSource dataSource, PoolConfig config) {
+        return new PooledDataSource(dataSource, config);
+    }
+
     public static Map<String, String> getInMemoryDbPropertiesMap() {
         return Map.of(
                 "url", String.format("jdbc:h2:mem:%s", DEFAULT_DATABASE_NAME),
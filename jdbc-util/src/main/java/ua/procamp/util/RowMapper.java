@@ -0,0 +1,22 @@
+package ua.procamp.util;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * {@link RowMapper} converts the current row of a {@link ResultSet} into an object. Implementations are expected to
+ * resolve everything that does not depend on row values (e.g. column indexes) once, before the first row is mapped.
+ *
+ * @param <T> type of mapped object
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    /**
+     * Maps the current row of result set. Does not move the cursor.
+     *
+     * @param resultSet result set positioned on a row
+     * @return mapped object
+     * @throws SQLException if column value cannot be read
+     */
+    T mapRow(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,36 @@
+package ua.procamp.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * {@link SqlDialect} lists databases supported by exercises that need database specific SQL.
+ */
+public enum SqlDialect {
+    POSTGRESQL("PostgreSQL"),
+    H2("H2");
+
+    private final String databaseProductName;
+
+    SqlDialect(String databaseProductName) {
+        this.databaseProductName = databaseProductName;
+    }
+
+    /**
+     * Detects a dialect by the database product name reported by connection metadata.
+     *
+     * @param connection open connection
+     * @return dialect of the connected database
+     * @throws SQLFeatureNotSupportedException if the database is not supported
+     */
+    public static SqlDialect of(Connection connection) throws SQLException {
+        String productName = connection.getMetaData().getDatabaseProductName();
+        for (SqlDialect dialect : values()) {
+            if (dialect.databaseProductName.equalsIgnoreCase(productName)) {
+                return dialect;
+            }
+        }
+        throw new SQLFeatureNotSupportedException(String.format("Database %s is not supported", productName));
+    }
+}
@@ -0,0 +1,175 @@
+package ua.procamp.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link StatementCache} keeps {@link PreparedStatement}s of one {@link Connection} so that the same SQL is prepared
+ * only once while the connection is open. A statement is cached by its SQL together with the generated keys flag,
+ * result set type and result set concurrency it was prepared with. When the cache is full, the least recently used
+ * statement is closed and evicted. Closing the cache closes all cached statements, but not the connection.
+ * {@link ua.procamp.util.pool.PooledDataSource} keeps a cache for every physical connection.
+ * <p>
+ * Statements returned by the cache must not be closed by the caller. The cache is not thread safe, the same as
+ * the connection it wraps.
+ */
+public class StatementCache implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final Connection connection;
+    private final int capacity;
+    private final Map<String, PreparedStatement> statements;
+
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_CAPACITY);
+    }
+
+    public StatementCache(Connection connection, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Statement cache capacity should be positive");
+        }
+        this.connection = Objects.requireNonNull(connection);
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(capacity, 0.75f, true);
+    }
+
+    /**
+     * Returns a cached statement for a given SQL or prepares a new one. Parameters of a cached statement are cleared.
+     *
+     * @param sql SQL statement
+     * @return prepared statement that belongs to the cache
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns a cached statement for a given SQL and generated keys flag or prepares a new one. Parameters of a cached
+     * statement are cleared. A cached statement that was closed is prepared again.
+     *
+     * @param sql               SQL statement
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     * @return prepared statement that belongs to the cache
+     */
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        Objects.requireNonNull(sql);
+        return prepare(key(sql, autoGeneratedKeys, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY),
+                () -> connection.prepareStatement(sql, autoGeneratedKeys));
+    }
+
+    /**
+     * Returns a cached statement for a given SQL, result set type and concurrency or prepares a new one. Statements
+     * that differ only in result set type or concurrency are cached separately.
+     *
+     * @param sql                  SQL statement
+     * @param resultSetType        one of {@code ResultSet.TYPE_*} constants
+     * @param resultSetConcurrency one of {@code ResultSet.CONCUR_*} constants
+     * @return prepared statement that belongs to the cache
+     */
+    public PreparedStatement prepare(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        Objects.requireNonNull(sql);
+        return prepare(key(sql, Statement.NO_GENERATED_KEYS, resultSetType, resultSetConcurrency),
+                () -> connection.prepareStatement(sql, resultSetType, resultSetConcurrency));
+    }
+
+    private PreparedStatement prepare(String key, StatementFactory statementFactory) throws SQLException {
+        PreparedStatement statement = statements.get(key);
+        if (statement != null && !statement.isClosed()) {
+            statement.clearParameters();
+            return statement;
+        }
+        statement = statementFactory.prepare();
+        statements.put(key, statement);
+        evictLeastRecentlyUsed(statement);
+        return statement;
+    }
+
+    /**
+     * Returns a cached statement as is, without preparing a new one or clearing its parameters.
+     *
+     * @param sql               SQL statement
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     * @return cached statement or {@code null} if there is none
+     */
+    public PreparedStatement get(String sql, int autoGeneratedKeys) {
+        return statements.get(key(sql, autoGeneratedKeys, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+    }
+
+    /**
+     * Returns a cached statement as is, without preparing a new one or clearing its parameters.
+     *
+     * @param sql                  SQL statement
+     * @param resultSetType        one of {@code ResultSet.TYPE_*} constants
+     * @param resultSetConcurrency one of {@code ResultSet.CONCUR_*} constants
+     * @return cached statement or {@code null} if there is none
+     */
+    public PreparedStatement get(String sql, int resultSetType, int resultSetConcurrency) {
+        return statements.get(key(sql, Statement.NO_GENERATED_KEYS, resultSetType, resultSetConcurrency));
+    }
+
+    private static String key(String sql, int autoGeneratedKeys, int resultSetType, int resultSetConcurrency) {
+        return autoGeneratedKeys + ":" + resultSetType + ":" + resultSetConcurrency + ":" + sql;
+    }
+
+    @FunctionalInterface
+    private interface StatementFactory {
+        PreparedStatement prepare() throws SQLException;
+    }
+
+    /**
+     * Closes least recently used statements while the cache is over capacity. Statements that are not evictable and
+     * the statement that was just added are kept, so the cache may stay over capacity for a while.
+     */
+    private void evictLeastRecentlyUsed(PreparedStatement addedStatement) throws SQLException {
+        Iterator<PreparedStatement> iterator = statements.values().iterator();
+        while (statements.size() > capacity && iterator.hasNext()) {
+            PreparedStatement eldest = iterator.next();
+            if (eldest != addedStatement && isEvictable(eldest)) {
+                iterator.remove();
+                eldest.close();
+            }
+        }
+    }
+
+    /**
+     * Tells whether a statement may be closed to free space in the cache. All statements are evictable by default.
+     */
+    protected boolean isEvictable(PreparedStatement statement) {
+        return true;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes all cached statements. Tries to close every statement even if some of them fail, and throws the first
+     * occurred exception with the others added as suppressed.
+     */
+    @Override
+    public void close() throws SQLException {
+        SQLException closeException = null;
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                if (closeException == null) {
+                    closeException = e;
+                } else {
+                    closeException.addSuppressed(e);
+                }
+            }
+        }
+        statements.clear();
+        if (closeException != null) {
+            throw closeException;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ua.procamp.util.bulk;
+
+public class BulkLoadException extends RuntimeException {
+    public BulkLoadException(String message, Exception e) {
+        super(message, e);
+    }
+}
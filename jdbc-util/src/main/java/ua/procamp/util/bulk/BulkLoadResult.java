@@ -0,0 +1,26 @@
+package ua.procamp.util.bulk;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BulkLoadResult} reports how many rows were loaded by {@link BulkLoader} and how long it took.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BulkLoadResult {
+    private final long rowCount;
+    private final long elapsedNanos;
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+}
@@ -0,0 +1,177 @@
+package ua.procamp.util.bulk;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import ua.procamp.util.SqlDialect;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * {@link BulkLoader} inserts large amounts of objects into one table. On PostgreSQL objects are streamed as CSV
+ * into {@code COPY ... FROM STDIN}, so rows are never collected in memory: at most {@code bufferSize} bytes are
+ * buffered before they are sent to the server. Other databases (H2) fall back to batched {@code INSERT} statements.
+ * <p>
+ * The whole load runs in one transaction, so either all objects are loaded, or none of them. Generated ids are not
+ * returned to the loaded objects.
+ *
+ * @param <T> type of loaded objects
+ */
+public class BulkLoader<T> {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final TableMapping<T> tableMapping;
+    private final int batchSize;
+    private final int bufferSize;
+
+    public BulkLoader(DataSource dataSource, TableMapping<T> tableMapping) {
+        this(dataSource, tableMapping, DEFAULT_BATCH_SIZE, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param batchSize  number of rows per {@code INSERT} batch, used when {@code COPY} is not supported
+     * @param bufferSize number of bytes buffered before they are sent to {@code COPY}
+     */
+    public BulkLoader(DataSource dataSource, TableMapping<T> tableMapping, int batchSize, int bufferSize) {
+        if (batchSize <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("Batch size and buffer size should be positive");
+        }
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.tableMapping = Objects.requireNonNull(tableMapping);
+        this.batchSize = batchSize;
+        this.bufferSize = bufferSize;
+    }
+
+    public BulkLoadResult load(Iterable<T> objects) {
+        return load(objects.iterator());
+    }
+
+    public BulkLoadResult load(Stream<T> objects) {
+        return load(objects.iterator());
+    }
+
+    /**
+     * Loads all objects returned by the iterator.
+     *
+     * @param objects objects to load, that are consumed lazily
+     * @return number of loaded rows and elapsed time
+     */
+    public BulkLoadResult load(Iterator<T> objects) {
+        Objects.requireNonNull(objects);
+        long startNanos = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long rowCount = SqlDialect.of(connection) == SqlDialect.POSTGRESQL
+                        ? copy(connection, objects)
+                        : insertInBatches(connection, objects);
+                connection.commit();
+                return new BulkLoadResult(rowCount, System.nanoTime() - startNanos);
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | IOException e) {
+            throw new BulkLoadException(String.format("Error loading rows into table %s", tableMapping.getTableName()), e);
+        }
+    }
+
+    private long copy(Connection connection, Iterator<T> objects) throws SQLException, IOException {
+        String copySql = String.format("COPY %s (%s) FROM STDIN WITH (FORMAT csv)",
+                tableMapping.getTableName(), String.join(", ", tableMapping.getColumns()));
+        PGCopyOutputStream copyStream = new PGCopyOutputStream(connection.unwrap(PGConnection.class), copySql, bufferSize);
+        try {
+            Writer writer = new OutputStreamWriter(copyStream, StandardCharsets.UTF_8);
+            StringBuilder row = new StringBuilder();
+            while (objects.hasNext()) {
+                row.setLength(0);
+                appendCsvRow(row, tableMapping.getValues(objects.next()));
+                writer.append(row);
+            }
+            writer.flush();
+            return copyStream.endCopy();
+        } finally {
+            if (copyStream.isActive()) {
+                copyStream.cancelCopy();
+            }
+        }
+    }
+
+    private void appendCsvRow(StringBuilder row, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            appendCsvValue(row, values[i]);
+        }
+        row.append('\n');
+    }
+
+    /**
+     * Null is written as an unquoted empty value, which CSV {@code COPY} reads as {@code NULL}. Text is always quoted,
+     * so that empty strings, separators, and line breaks are kept as they are.
+     */
+    private void appendCsvValue(StringBuilder row, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof BigDecimal) {
+            row.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            row.append(value);
+        } else {
+            String text = toJdbcValue(value).toString();
+            row.append('"').append(text.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    private long insertInBatches(Connection connection, Iterator<T> objects) throws SQLException {
+        String insertSql = String.format("INSERT INTO %s (%s) VALUES (%s)",
+                tableMapping.getTableName(), String.join(", ", tableMapping.getColumns()),
+                String.join(", ", Collections.nCopies(tableMapping.getColumns().size(), "?")));
+        long rowCount = 0;
+        try (PreparedStatement insertStatement = connection.prepareStatement(insertSql)) {
+            int batchCount = 0;
+            while (objects.hasNext()) {
+                Object[] values = tableMapping.getValues(objects.next());
+                for (int i = 0; i < values.length; i++) {
+                    insertStatement.setObject(i + 1, toJdbcValue(values[i]));
+                }
+                insertStatement.addBatch();
+                if (++batchCount == batchSize) {
+                    rowCount += executeBatch(insertStatement);
+                    batchCount = 0;
+                }
+            }
+            if (batchCount > 0) {
+                rowCount += executeBatch(insertStatement);
+            }
+        }
+        return rowCount;
+    }
+
+    private int executeBatch(PreparedStatement insertStatement) throws SQLException {
+        int rowCount = 0;
+        for (int updateCount : insertStatement.executeBatch()) {
+            rowCount += updateCount == PreparedStatement.SUCCESS_NO_INFO ? 1 : updateCount;
+        }
+        return rowCount;
+    }
+
+    private Object toJdbcValue(Object value) {
+        return value instanceof Enum ? ((Enum<?>) value).name() : value;
+    }
+}
@@ -0,0 +1,38 @@
+package ua.procamp.util.bulk;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * {@link TableMapping} describes how objects are written to a table by {@link BulkLoader}: the table name, the list
+ * of loaded columns, and a function that returns column values of an object in the same order.
+ *
+ * @param <T> type of loaded objects
+ */
+@Getter
+public class TableMapping<T> {
+    private final String tableName;
+    private final List<String> columns;
+    private final Function<T, Object[]> columnValues;
+
+    public TableMapping(String tableName, List<String> columns, Function<T, Object[]> columnValues) {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Table mapping should have at least one column");
+        }
+        this.tableName = Objects.requireNonNull(tableName);
+        this.columns = List.copyOf(columns);
+        this.columnValues = Objects.requireNonNull(columnValues);
+    }
+
+    Object[] getValues(T object) {
+        Object[] values = columnValues.apply(object);
+        if (values.length != columns.size()) {
+            throw new IllegalStateException(String.format("Expected %d column values for table %s, but got %d",
+                    columns.size(), tableName, values.length));
+        }
+        return values;
+    }
+}
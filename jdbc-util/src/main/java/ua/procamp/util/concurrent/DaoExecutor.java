@@ -0,0 +1,143 @@
+package ua.procamp.util.concurrent;
+
+import ua.procamp.util.pool.PooledDataSource;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link DaoExecutor} runs blocking DAO calls asynchronously and never runs more of them at the same time than a
+ * given limit, which is usually the size of the connection pool.
+ * <p>
+ * On Java 21+ every call gets its own virtual thread, and calls over the limit wait on a {@link Semaphore}, which
+ * costs no platform thread. Older JVMs have no virtual threads, so there calls are queued to a fixed pool of
+ * platform threads as big as the limit. The module is compiled for Java 11, so virtual threads are looked up
+ * reflectively.
+ */
+public class DaoExecutor implements AutoCloseable {
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    private DaoExecutor(ExecutorService executorService, Semaphore permits, int maxConcurrency) {
+        this.executorService = executorService;
+        this.permits = permits;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Creates an executor on virtual threads if the JVM supports them, on platform threads otherwise.
+     *
+     * @param maxConcurrency maximum number of calls that run at the same time
+     */
+    public static DaoExecutor create(int maxConcurrency) {
+        return isVirtualThreadSupported() ? virtualThreadPerTask(maxConcurrency) : fixedThreadPool(maxConcurrency);
+    }
+
+    /**
+     * Creates an executor that runs as many calls at the same time as the pool has connections.
+     */
+    public static DaoExecutor forPool(PooledDataSource dataSource) {
+        return create(dataSource.getConfig().getMaxPoolSize());
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per call and bounds concurrent calls with a semaphore.
+     *
+     * @throws UnsupportedOperationException if the JVM has no virtual threads
+     */
+    public static DaoExecutor virtualThreadPerTask(int maxConcurrency) {
+        requirePositive(maxConcurrency);
+        try {
+            ExecutorService executorService = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new DaoExecutor(executorService, new Semaphore(maxConcurrency), maxConcurrency);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(String.format("Virtual threads are not supported by Java %s",
+                    System.getProperty("java.version")), e);
+        }
+    }
+
+    /**
+     * Creates an executor that queues calls to a fixed pool of platform threads.
+     */
+    public static DaoExecutor fixedThreadPool(int threadCount) {
+        requirePositive(threadCount);
+        return new DaoExecutor(Executors.newFixedThreadPool(threadCount), null, threadCount);
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static void requirePositive(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Maximum number of concurrent calls should be positive");
+        }
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> call) {
+        Objects.requireNonNull(call);
+        if (permits == null) {
+            return CompletableFuture.supplyAsync(call, executorService);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            acquirePermit();
+            try {
+                return call.get();
+            } finally {
+                permits.release();
+            }
+        }, executorService);
+    }
+
+    public CompletableFuture<Void> run(Runnable call) {
+        Objects.requireNonNull(call);
+        return supply(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private void acquirePermit() {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public boolean isVirtualThreads() {
+        return permits != null;
+    }
+
+    /**
+     * Stops accepting new calls and waits until the submitted ones complete.
+     */
+    @Override
+    public void close() {
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
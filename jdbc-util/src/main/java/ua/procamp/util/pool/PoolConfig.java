@@ -0,0 +1,55 @@
+package ua.procamp.util.pool;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import ua.procamp.util.StatementCache;
+
+/**
+ * {@link PoolConfig} holds settings of {@link PooledDataSource}. All durations are in milliseconds.
+ */
+@Getter
+@Builder
+@ToString
+public class PoolConfig {
+    /**
+     * Maximum number of physical connections, both idle and in use
+     */
+    @Builder.Default
+    private final int maxPoolSize = 10;
+    /**
+     * Maximum time to wait for a free connection before {@link java.sql.SQLTimeoutException} is thrown
+     */
+    @Builder.Default
+    private final long connectionTimeout = 30_000;
+    /**
+     * Maximum time to wait for {@link java.sql.Connection#isValid(int)} when an idle connection is borrowed
+     */
+    @Builder.Default
+    private final long validationTimeout = 5_000;
+    /**
+     * Idle connections that were not validated for this time are validated before they are returned to a caller
+     */
+    @Builder.Default
+    private final long validationInterval = 500;
+    /**
+     * Maximum lifetime of a physical connection. A connection is closed once it is returned after that time
+     */
+    @Builder.Default
+    private final long maxLifetime = 30 * 60_000;
+    /**
+     * A warning with the current stack trace of the borrowing thread is logged if a connection is not returned for this
+     * time. Zero disables leak detection
+     */
+    @Builder.Default
+    private final long leakDetectionThreshold = 0;
+    /**
+     * Maximum number of prepared statements cached by every physical connection. Zero disables the cache
+     */
+    @Builder.Default
+    private final int statementCacheSize = StatementCache.DEFAULT_CAPACITY;
+
+    public static PoolConfig defaultConfig() {
+        return PoolConfig.builder().build();
+    }
+}
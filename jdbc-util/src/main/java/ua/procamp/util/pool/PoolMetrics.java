@@ -0,0 +1,35 @@
+package ua.procamp.util.pool;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PoolMetrics} is a snapshot of {@link PooledDataSource} state and counters.
+ */
+@Getter
+@Builder
+@ToString
+public class PoolMetrics {
+    private final int totalConnections;
+    private final int idleConnections;
+    private final int activeConnections;
+    private final int threadsAwaitingConnection;
+    private final long createdConnections;
+    private final long closedConnections;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long leakCount;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    public double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0 : (double) totalWaitNanos / borrowCount / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxWaitMillis() {
+        return (double) maxWaitNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,682 @@
+package ua.procamp.util.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ua.procamp.util.StatementCache;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * {@link PooledDataSource} is a small connection pool on top of another {@link DataSource}. Physical connections are
+ * kept in a lock-free idle deque and reused in LIFO order, the total number of connections is bounded by a
+ * {@link Semaphore}. An idle connection is validated before it is borrowed and closed once it outlives
+ * {@link PoolConfig#getMaxLifetime()}.
+ * <p>
+ * {@link Connection#close()} of a borrowed connection returns it to the pool. Statements and result sets that are
+ * still open are closed, pending transaction is rolled back, auto-commit and read-only modes are restored. Connections
+ * that failed with a connection error (SQL state class 08) are not returned to the pool.
+ * <p>
+ * Every physical connection keeps a {@link StatementCache} of up to {@link PoolConfig#getStatementCacheSize()}
+ * statements created by {@link Connection#prepareStatement(String)}, {@link Connection#prepareStatement(String, int)}
+ * and {@link Connection#prepareStatement(String, int, int)}. Closing such a statement leaves it open for the next
+ * caller of the same SQL on the same physical connection, so statements are prepared once per connection instead of
+ * once per borrowing. Fetch size, fetch direction, row and field size limits and query timeout changed on a cached
+ * statement are reset when it is closed, a cached statement whose other settings were changed is closed instead.
+ */
+public class PooledDataSource implements DataSource, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledDataSource.class);
+    private static final String CONNECTION_EXCEPTION_SQL_STATE_CLASS = "08";
+    private static final Map<String, String> RESTORABLE_STATEMENT_SETTINGS = Map.of("setFetchSize", "getFetchSize",
+            "setFetchDirection", "getFetchDirection", "setMaxRows", "getMaxRows", "setLargeMaxRows", "getLargeMaxRows",
+            "setMaxFieldSize", "getMaxFieldSize", "setQueryTimeout", "getQueryTimeout");
+    private static final Set<String> STATEMENT_SETTINGS = Set.of("setEscapeProcessing", "setPoolable",
+            "setCursorName", "closeOnCompletion");
+
+    private final DataSource dataSource;
+    private final PoolConfig config;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService leakDetector;
+    private volatile boolean closed;
+
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LongAdder createdConnections = new LongAdder();
+    private final LongAdder closedConnections = new LongAdder();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public PooledDataSource(DataSource dataSource, PoolConfig config) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.config = Objects.requireNonNull(config);
+        if (config.getMaxPoolSize() <= 0) {
+            throw new IllegalArgumentException("Pool size should be positive");
+        }
+        if (config.getStatementCacheSize() < 0) {
+            throw new IllegalArgumentException("Statement cache size should not be negative");
+        }
+        this.permits = new Semaphore(config.getMaxPoolSize(), true);
+        this.leakDetector = config.getLeakDetectionThreshold() > 0 ? createLeakDetector() : null;
+    }
+
+    private static ScheduledExecutorService createLeakDetector() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        acquirePermit();
+        try {
+            PooledConnection pooledConnection = takeIdleOrCreate();
+            recordWait(System.nanoTime() - start);
+            activeConnections.incrementAndGet();
+            return lease(pooledConnection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquirePermit() throws SQLException {
+        try {
+            if (!permits.tryAcquire(config.getConnectionTimeout(), MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTimeoutException(String.format(
+                        "Connection is not available, request timed out after %d ms", config.getConnectionTimeout()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            if (isUsable(pooledConnection)) {
+                return pooledConnection;
+            }
+            closePhysically(pooledConnection);
+        }
+        return createConnection();
+    }
+
+    private boolean isUsable(PooledConnection pooledConnection) {
+        if (isExpired(pooledConnection)) {
+            return false;
+        }
+        long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooledConnection.lastReturned);
+        if (idleMillis < config.getValidationInterval()) {
+            return true;
+        }
+        try {
+            int timeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(config.getValidationTimeout()));
+            return pooledConnection.connection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            LOGGER.debug("Connection validation failed", e);
+            return false;
+        }
+    }
+
+    private boolean isExpired(PooledConnection pooledConnection) {
+        long ageMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooledConnection.createdAt);
+        return ageMillis >= config.getMaxLifetime();
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        PooledConnection pooledConnection = new PooledConnection(dataSource.getConnection(),
+                config.getStatementCacheSize());
+        totalConnections.incrementAndGet();
+        createdConnections.increment();
+        return pooledConnection;
+    }
+
+    private Connection lease(PooledConnection pooledConnection) {
+        ConnectionLease lease = new ConnectionLease(pooledConnection);
+        if (leakDetector != null) {
+            Thread borrower = Thread.currentThread();
+            lease.leakTask = leakDetector.schedule(() -> reportLeak(borrower),
+                    config.getLeakDetectionThreshold(), MILLISECONDS);
+        }
+        lease.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, lease);
+        return lease.proxy;
+    }
+
+    /**
+     * Logs a leaked connection with the current stack trace of the thread that borrowed it. The stack is captured only
+     * when a leak is reported, so borrowing does not pay for it, but it shows where the borrower is now rather than
+     * where the connection was borrowed.
+     */
+    private void reportLeak(Thread borrower) {
+        leakCount.increment();
+        Exception borrowerTrace = new Exception("Connection is held by thread " + borrower.getName());
+        borrowerTrace.setStackTrace(borrower.getStackTrace());
+        LOGGER.warn("Connection leak detected: connection was not returned within {} ms",
+                config.getLeakDetectionThreshold(), borrowerTrace);
+    }
+
+    private void release(PooledConnection pooledConnection) {
+        try {
+            if (closed || pooledConnection.broken || isExpired(pooledConnection) || !reset(pooledConnection)) {
+                closePhysically(pooledConnection);
+            } else {
+                pooledConnection.lastReturned = System.nanoTime();
+                idleConnections.offerFirst(pooledConnection);
+                if (closed) {
+                    closeIdleConnections();
+                }
+            }
+        } finally {
+            activeConnections.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    private boolean reset(PooledConnection pooledConnection) {
+        Connection connection = pooledConnection.connection;
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (connection.isReadOnly()) {
+                connection.setReadOnly(false);
+            }
+            connection.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.debug("Cannot reset connection state", e);
+            return false;
+        }
+    }
+
+    private void closePhysically(PooledConnection pooledConnection) {
+        totalConnections.decrementAndGet();
+        closedConnections.increment();
+        try (Connection connection = pooledConnection.connection) {
+            if (pooledConnection.statementCache != null) {
+                pooledConnection.statementCache.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.debug("Cannot close connection", e);
+        }
+    }
+
+    private void closeIdleConnections() {
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            closePhysically(pooledConnection);
+        }
+    }
+
+    /**
+     * Returns current state and counters of the pool
+     *
+     * @return metrics snapshot
+     */
+    public PoolMetrics getMetrics() {
+        return PoolMetrics.builder()
+                .totalConnections(totalConnections.get())
+                .idleConnections(idleConnections.size())
+                .activeConnections(activeConnections.get())
+                .threadsAwaitingConnection(permits.getQueueLength())
+                .createdConnections(createdConnections.sum())
+                .closedConnections(closedConnections.sum())
+                .borrowCount(borrowCount.sum())
+                .timeoutCount(timeoutCount.sum())
+                .leakCount(leakCount.sum())
+                .totalWaitNanos(totalWaitNanos.sum())
+                .maxWaitNanos(maxWaitNanos.get())
+                .build();
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Closes all idle connections. Borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdleConnections();
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections always use the credentials of the pool");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+
+    private static class PooledConnection {
+        private final Connection connection;
+        private final int statementCacheSize;
+        private final long createdAt = System.nanoTime();
+        private volatile long lastReturned = createdAt;
+        private volatile boolean broken;
+        private final Set<PreparedStatement> statementsInUse = ConcurrentHashMap.newKeySet();
+        private StatementCache statementCache;
+
+        private PooledConnection(Connection connection, int statementCacheSize) {
+            this.connection = connection;
+            this.statementCacheSize = statementCacheSize;
+        }
+
+        /**
+         * Takes a statement from the cache of this connection, unless caching is disabled or the statement for the
+         * same SQL is already in use.
+         *
+         * @param args arguments of {@link Connection#prepareStatement(String)},
+         *             {@link Connection#prepareStatement(String, int)} or
+         *             {@link Connection#prepareStatement(String, int, int)}
+         * @return cached statement marked as in use, or {@code null} if a new statement should be prepared
+         */
+        private PreparedStatement takeCachedStatement(Object[] args) throws SQLException {
+            if (statementCacheSize == 0) {
+                return null;
+            }
+            if (statementCache == null) {
+                statementCache = new StatementCache(connection, statementCacheSize) {
+                    @Override
+                    protected boolean isEvictable(PreparedStatement statement) {
+                        return !statementsInUse.contains(statement);
+                    }
+                };
+            }
+            String sql = (String) args[0];
+            boolean resultSetSpecified = args.length == 3;
+            int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+            PreparedStatement cachedStatement = resultSetSpecified
+                    ? statementCache.get(sql, (Integer) args[1], (Integer) args[2])
+                    : statementCache.get(sql, autoGeneratedKeys);
+            if (cachedStatement != null && statementsInUse.contains(cachedStatement)) {
+                return null;
+            }
+            PreparedStatement statement = resultSetSpecified
+                    ? statementCache.prepare(sql, (Integer) args[1], (Integer) args[2])
+                    : statementCache.prepare(sql, autoGeneratedKeys);
+            statementsInUse.add(statement);
+            return statement;
+        }
+
+        /**
+         * Calls a method of the physical connection or of one of its statements or result sets, and marks the
+         * connection broken if the call failed with a connection error.
+         */
+        private Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isConnectionError((SQLException) cause)) {
+                    broken = true;
+                }
+                throw cause;
+            }
+        }
+
+        private static boolean isConnectionError(SQLException e) {
+            String sqlState = e.getSQLState();
+            return sqlState != null && sqlState.startsWith(CONNECTION_EXCEPTION_SQL_STATE_CLASS);
+        }
+    }
+
+    /**
+     * Handles calls to a borrowed connection proxy. Calls are delegated to the physical connection until the proxy is
+     * closed, closing it closes all statements opened through it and returns the physical connection to the pool.
+     */
+    private class ConnectionLease implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final Set<StatementLease> openStatements = ConcurrentHashMap.newKeySet();
+        private Connection proxy;
+        private ScheduledFuture<?> leakTask;
+
+        private ConnectionLease(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return released.get() || pooledConnection.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + pooledConnection.connection;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+            }
+            if (released.get()) {
+                throw new SQLException("Connection is closed");
+            }
+            if (isCacheablePrepare(method)) {
+                PreparedStatement cachedStatement = pooledConnection.takeCachedStatement(args);
+                if (cachedStatement != null) {
+                    return openStatement(PreparedStatement.class, cachedStatement, true);
+                }
+            }
+            Object result = pooledConnection.invoke(pooledConnection.connection, method, args);
+            if (result instanceof Statement) {
+                return openStatement(method.getReturnType(), (Statement) result, false);
+            }
+            return result;
+        }
+
+        private boolean isCacheablePrepare(Method method) {
+            if (!method.getName().equals("prepareStatement")) {
+                return false;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            return parameterTypes.length == 1
+                    || parameterTypes.length == 2 && parameterTypes[1] == int.class
+                    || parameterTypes.length == 3;
+        }
+
+        private Statement openStatement(Class<?> statementType, Statement statement, boolean cached) {
+            StatementLease statementLease = new StatementLease(this, statement, cached);
+            openStatements.add(statementLease);
+            statementLease.proxy = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                    new Class<?>[]{statementType}, statementLease);
+            return statementLease.proxy;
+        }
+
+        private void close() {
+            if (released.compareAndSet(false, true)) {
+                if (leakTask != null) {
+                    leakTask.cancel(false);
+                }
+                closeOpenStatements();
+                release(pooledConnection);
+            }
+        }
+
+        private void closeOpenStatements() {
+            for (StatementLease statementLease : openStatements) {
+                try {
+                    statementLease.close();
+                } catch (SQLException e) {
+                    LOGGER.debug("Cannot close statement", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles calls to a statement proxy of a borrowed connection, so that {@link Statement#getConnection()} returns
+     * the connection proxy and the statement is closed when the connection is returned to the pool. Result sets are
+     * wrapped the same way.
+     */
+    private static class StatementLease implements InvocationHandler {
+        private final ConnectionLease connectionLease;
+        private final Statement statement;
+        private final boolean cached;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final Set<ResultSetLease> openResultSets = ConcurrentHashMap.newKeySet();
+        private Statement proxy;
+        // a cached statement with changed settings is closed instead of being reused with them
+        private boolean settingsChanged;
+        // original values of changed restorable settings of a cached statement, keyed by their setters
+        private final Map<Method, Object> originalSettings = new LinkedHashMap<>();
+
+        private StatementLease(ConnectionLease connectionLease, Statement statement, boolean cached) {
+            this.connectionLease = connectionLease;
+            this.statement = statement;
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return closed.get() || statement.isClosed();
+                case "getConnection":
+                    return connectionLease.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + statement;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+            }
+            if (closed.get()) {
+                throw new SQLException("Statement is closed");
+            }
+            if (STATEMENT_SETTINGS.contains(method.getName())) {
+                settingsChanged = true;
+            } else if (cached && RESTORABLE_STATEMENT_SETTINGS.containsKey(method.getName())
+                    && !originalSettings.containsKey(method)) {
+                Method getter = Statement.class.getMethod(RESTORABLE_STATEMENT_SETTINGS.get(method.getName()));
+                originalSettings.put(method, connectionLease.pooledConnection.invoke(statement, getter, null));
+            }
+            Object result = connectionLease.pooledConnection.invoke(statement, method, args);
+            if (result instanceof ResultSet) {
+                return openResultSet((ResultSet) result);
+            }
+            return result;
+        }
+
+        private ResultSet openResultSet(ResultSet resultSet) {
+            ResultSetLease resultSetLease = new ResultSetLease(this, resultSet);
+            openResultSets.add(resultSetLease);
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, resultSetLease);
+        }
+
+        private void close() throws SQLException {
+            if (closed.compareAndSet(false, true)) {
+                connectionLease.openStatements.remove(this);
+                for (ResultSetLease resultSetLease : openResultSets) {
+                    resultSetLease.close();
+                }
+                if (cached) {
+                    returnToCache();
+                } else {
+                    statement.close();
+                }
+            }
+        }
+
+        /**
+         * Leaves a cached statement open for the next caller of the same SQL, with restorable settings reset to their
+         * original values. If it cannot be cleaned up, it is closed and the cache prepares it again.
+         */
+        private void returnToCache() throws SQLException {
+            try {
+                if (settingsChanged) {
+                    statement.close();
+                } else {
+                    ((PreparedStatement) statement).clearBatch();
+                    statement.clearWarnings();
+                    restoreOriginalSettings();
+                }
+            } catch (SQLException e) {
+                statement.close();
+                throw e;
+            } finally {
+                connectionLease.pooledConnection.statementsInUse.remove(statement);
+            }
+        }
+
+        /**
+         * Restores settings in reverse order of their changes, since a driver may validate one setting against
+         * another, e.g. fetch size against max rows.
+         */
+        private void restoreOriginalSettings() throws SQLException {
+            List<Method> setters = new ArrayList<>(originalSettings.keySet());
+            for (int i = setters.size() - 1; i >= 0; i--) {
+                Method setter = setters.get(i);
+                try {
+                    setter.invoke(statement, originalSettings.get(setter));
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+                } catch (IllegalAccessException e) {
+                    throw new SQLException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles calls to a result set proxy, so that {@link ResultSet#getStatement()} returns the statement proxy.
+     */
+    private static class ResultSetLease implements InvocationHandler {
+        private final StatementLease statementLease;
+        private final ResultSet resultSet;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private ResultSetLease(StatementLease statementLease, ResultSet resultSet) {
+            this.statementLease = statementLease;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return closed.get() || resultSet.isClosed();
+                case "getStatement":
+                    return statementLease.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + resultSet;
+            }
+            if (closed.get()) {
+                throw new SQLException("Result set is closed");
+            }
+            return statementLease.connectionLease.pooledConnection.invoke(resultSet, method, args);
+        }
+
+        private void close() throws SQLException {
+            if (closed.compareAndSet(false, true)) {
+                statementLease.openResultSets.remove(this);
+                resultSet.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ua.procamp.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StatementCacheTest {
+    private Connection connection;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        connection = JdbcUtil.createInMemoryH2DataSource("jdbc:h2:mem:statement_cache_test", "sa", "").getConnection();
+    }
+
+    @AfterEach
+    public void destroy() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void testSameSqlIsPreparedOnce() throws SQLException {
+        try (StatementCache statements = new StatementCache(connection)) {
+            PreparedStatement statement = statements.prepare("SELECT ?");
+            statement.setInt(1, 42);
+
+            PreparedStatement cachedStatement = statements.prepare("SELECT ?");
+
+            assertThat(cachedStatement, sameInstance(statement));
+            assertThrows(SQLException.class, cachedStatement::executeQuery);
+            assertThat(statements.size(), equalTo(1));
+        }
+    }
+
+    @Test
+    public void testGeneratedKeysFlagIsPartOfKey() throws SQLException {
+        try (StatementCache statements = new StatementCache(connection)) {
+            PreparedStatement statement = statements.prepare("SELECT 1");
+            PreparedStatement statementWithKeys = statements.prepare("SELECT 1", Statement.RETURN_GENERATED_KEYS);
+
+            assertThat(statementWithKeys, not(sameInstance(statement)));
+            assertThat(statements.get("SELECT 1", Statement.NO_GENERATED_KEYS), sameInstance(statement));
+            assertThat(statements.size(), equalTo(2));
+        }
+    }
+
+    @Test
+    public void testResultSetTypeAndConcurrencyArePartOfKey() throws SQLException {
+        try (StatementCache statements = new StatementCache(connection)) {
+            PreparedStatement statement = statements.prepare("SELECT 1");
+            PreparedStatement scrollableStatement = statements.prepare("SELECT 1",
+                    ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+
+            assertThat(scrollableStatement, not(sameInstance(statement)));
+            assertThat(statements.prepare("SELECT 1", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY),
+                    sameInstance(scrollableStatement));
+            assertThat(statements.get("SELECT 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY),
+                    sameInstance(statement));
+            assertThat(statements.size(), equalTo(2));
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStatementIsEvictedAndClosed() throws SQLException {
+        try (StatementCache statements = new StatementCache(connection, 2)) {
+            PreparedStatement first = statements.prepare("SELECT 1");
+            PreparedStatement second = statements.prepare("SELECT 2");
+            statements.prepare("SELECT 1");
+
+            PreparedStatement third = statements.prepare("SELECT 3");
+
+            assertThat(statements.size(), equalTo(2));
+            assertThat(second.isClosed(), is(true));
+            assertThat(first.isClosed(), is(false));
+            assertThat(third.isClosed(), is(false));
+            assertThat(statements.get("SELECT 2", Statement.NO_GENERATED_KEYS), nullValue());
+        }
+    }
+
+    @Test
+    public void testNotEvictableStatementIsKept() throws SQLException {
+        try (StatementCache statements = new StatementCache(connection, 1) {
+            @Override
+            protected boolean isEvictable(PreparedStatement statement) {
+                return false;
+            }
+        }) {
+            PreparedStatement first = statements.prepare("SELECT 1");
+            PreparedStatement second = statements.prepare("SELECT 2");
+
+            assertThat(statements.size(), equalTo(2));
+            assertThat(first.isClosed(), is(false));
+            assertThat(second.isClosed(), is(false));
+        }
+    }
+
+    @Test
+    public void testClosedStatementIsPreparedAgain() throws SQLException {
+        try (StatementCache statements = new StatementCache(connection)) {
+            PreparedStatement statement = statements.prepare("SELECT 1");
+            statement.close();
+
+            PreparedStatement preparedAgain = statements.prepare("SELECT 1");
+
+            assertThat(preparedAgain, not(sameInstance(statement)));
+            try (ResultSet resultSet = preparedAgain.executeQuery()) {
+                assertThat(resultSet.next(), is(true));
+            }
+        }
+    }
+
+    @Test
+    public void testCloseClosesAllStatements() throws SQLException {
+        StatementCache statements = new StatementCache(connection);
+        PreparedStatement first = statements.prepare("SELECT 1");
+        PreparedStatement second = statements.prepare("SELECT 2");
+
+        statements.close();
+
+        assertThat(first.isClosed(), is(true));
+        assertThat(second.isClosed(), is(true));
+        assertThat(statements.size(), equalTo(0));
+        assertThat(connection.isClosed(), is(false));
+    }
+
+    @Test
+    public void testCapacityShouldBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new StatementCache(connection, 0));
+    }
+}
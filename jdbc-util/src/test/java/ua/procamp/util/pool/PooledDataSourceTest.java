@@ -0,0 +1,372 @@
+package ua.procamp.util.pool;
+
+import org.h2.jdbc.JdbcPreparedStatement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PooledDataSourceTest {
+    private TestDataSource testDataSource;
+    private PooledDataSource pooledDataSource;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        testDataSource = new TestDataSource("pool_test");
+        try (Connection connection = testDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS items (id BIGINT PRIMARY KEY)");
+            statement.execute("DELETE FROM items");
+        }
+        testDataSource.getConnections().clear();
+    }
+
+    @AfterEach
+    public void destroy() {
+        if (pooledDataSource != null) {
+            pooledDataSource.close();
+        }
+    }
+
+    private PooledDataSource createPool(PoolConfig config) {
+        pooledDataSource = new PooledDataSource(testDataSource, config);
+        return pooledDataSource;
+    }
+
+    @Test
+    public void testConnectionIsReused() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+
+        pooledDataSource.getConnection().close();
+        pooledDataSource.getConnection().close();
+
+        PoolMetrics metrics = pooledDataSource.getMetrics();
+        assertThat(metrics.getCreatedConnections(), equalTo(1L));
+        assertThat(metrics.getBorrowCount(), equalTo(2L));
+        assertThat(metrics.getIdleConnections(), equalTo(1));
+        assertThat(metrics.getActiveConnections(), equalTo(0));
+    }
+
+    @Test
+    public void testPoolSizeIsBounded() throws SQLException {
+        createPool(PoolConfig.builder().maxPoolSize(2).connectionTimeout(100).build());
+        Connection first = pooledDataSource.getConnection();
+        Connection second = pooledDataSource.getConnection();
+
+        assertThrows(SQLTimeoutException.class, () -> pooledDataSource.getConnection());
+
+        PoolMetrics metrics = pooledDataSource.getMetrics();
+        assertThat(metrics.getTotalConnections(), equalTo(2));
+        assertThat(metrics.getActiveConnections(), equalTo(2));
+        assertThat(metrics.getTimeoutCount(), equalTo(1L));
+        first.close();
+        pooledDataSource.getConnection().close();
+        second.close();
+        assertThat(pooledDataSource.getMetrics().getCreatedConnections(), equalTo(2L));
+    }
+
+    @Test
+    public void testIdleConnectionIsValidatedOnBorrow() throws SQLException {
+        createPool(PoolConfig.builder().validationInterval(0).build());
+        pooledDataSource.getConnection().close();
+        testDataSource.lastConnection().invalidate();
+
+        try (Connection connection = pooledDataSource.getConnection()) {
+            assertThat(connection.isValid(1), is(true));
+        }
+
+        PoolMetrics metrics = pooledDataSource.getMetrics();
+        assertThat(metrics.getCreatedConnections(), equalTo(2L));
+        assertThat(metrics.getClosedConnections(), equalTo(1L));
+        assertThat(testDataSource.getConnections().get(0).isClosed(), is(true));
+    }
+
+    @Test
+    public void testRecentlyReturnedConnectionIsNotValidated() throws SQLException {
+        createPool(PoolConfig.builder().validationInterval(60_000).build());
+        pooledDataSource.getConnection().close();
+        testDataSource.lastConnection().invalidate();
+
+        pooledDataSource.getConnection().close();
+
+        assertThat(pooledDataSource.getMetrics().getCreatedConnections(), equalTo(1L));
+    }
+
+    @Test
+    public void testConnectionIsClosedAfterMaxLifetime() throws SQLException, InterruptedException {
+        createPool(PoolConfig.builder().maxLifetime(50).build());
+        pooledDataSource.getConnection().close();
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        pooledDataSource.getConnection().close();
+
+        PoolMetrics metrics = pooledDataSource.getMetrics();
+        assertThat(metrics.getCreatedConnections(), equalTo(2L));
+        assertThat(testDataSource.getConnections().get(0).isClosed(), is(true));
+    }
+
+    @Test
+    public void testConnectionStateIsResetOnReturn() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        try (Connection connection = pooledDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            statement.executeUpdate("INSERT INTO items (id) VALUES (1)");
+        }
+
+        try (Connection connection = pooledDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM items")) {
+            assertThat(connection.getAutoCommit(), is(true));
+            assertThat(connection.isReadOnly(), is(false));
+            resultSet.next();
+            assertThat(resultSet.getLong(1), equalTo(0L));
+        }
+        assertThat(pooledDataSource.getMetrics().getCreatedConnections(), equalTo(1L));
+    }
+
+    @Test
+    public void testBrokenConnectionIsEvicted() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        Connection connection = pooledDataSource.getConnection();
+        testDataSource.lastConnection().fail();
+
+        SQLException exception = assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 1"));
+        connection.close();
+
+        assertThat(exception.getSQLState(), equalTo("08006"));
+        PoolMetrics metrics = pooledDataSource.getMetrics();
+        assertThat(metrics.getIdleConnections(), equalTo(0));
+        assertThat(metrics.getTotalConnections(), equalTo(0));
+        assertThat(metrics.getClosedConnections(), equalTo(1L));
+        assertThat(testDataSource.getConnections().get(0).isClosed(), is(true));
+    }
+
+    @Test
+    public void testLeakIsDetected() throws SQLException, InterruptedException {
+        createPool(PoolConfig.builder().leakDetectionThreshold(50).build());
+        pooledDataSource.getConnection().close();
+        Connection leakedConnection = pooledDataSource.getConnection();
+
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        assertThat(pooledDataSource.getMetrics().getLeakCount(), equalTo(1L));
+        leakedConnection.close();
+    }
+
+    @Test
+    public void testWaitIsMeasured() throws Exception {
+        createPool(PoolConfig.builder().maxPoolSize(1).build());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Connection connection = pooledDataSource.getConnection();
+            CountDownLatch borrowing = new CountDownLatch(1);
+            Future<?> waiter = executor.submit(() -> {
+                borrowing.countDown();
+                try (Connection ignored = pooledDataSource.getConnection()) {
+                    return null;
+                }
+            });
+            borrowing.await();
+            while (pooledDataSource.getMetrics().getThreadsAwaitingConnection() == 0) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+            connection.close();
+            waiter.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PoolMetrics metrics = pooledDataSource.getMetrics();
+        assertThat(metrics.getBorrowCount(), equalTo(2L));
+        assertThat(metrics.getThreadsAwaitingConnection(), equalTo(0));
+        assertThat(metrics.getMaxWaitMillis(), greaterThanOrEqualTo(100.0));
+        assertThat(metrics.getAverageWaitMillis(), greaterThanOrEqualTo(50.0));
+    }
+
+    @Test
+    public void testStatementReturnsPooledConnection() throws SQLException {
+        createPool(PoolConfig.builder().maxPoolSize(1).connectionTimeout(100).build());
+        Connection connection = pooledDataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement("SELECT id FROM items");
+        ResultSet resultSet = statement.executeQuery();
+
+        assertThat(statement.getConnection(), sameInstance(connection));
+        assertThat(resultSet.getStatement(), sameInstance(statement));
+        statement.getConnection().close();
+        statement.getConnection().close();
+
+        assertThat(connection.isClosed(), is(true));
+        PoolMetrics metrics = pooledDataSource.getMetrics();
+        assertThat(metrics.getActiveConnections(), equalTo(0));
+        assertThat(metrics.getIdleConnections(), equalTo(1));
+        pooledDataSource.getConnection().close();
+    }
+
+    @Test
+    public void testOpenStatementsAreClosedOnReturn() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        Connection connection = pooledDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT id FROM items");
+        Statement physicalStatement = statement.unwrap(org.h2.jdbc.JdbcStatement.class);
+        ResultSet physicalResultSet = resultSet.unwrap(org.h2.jdbc.JdbcResultSet.class);
+
+        connection.close();
+
+        assertThat(statement.isClosed(), is(true));
+        assertThat(resultSet.isClosed(), is(true));
+        assertThat(physicalStatement.isClosed(), is(true));
+        assertThat(physicalResultSet.isClosed(), is(true));
+        assertThrows(SQLException.class, () -> statement.executeQuery("SELECT id FROM items"));
+    }
+
+    @Test
+    public void testPreparedStatementIsCachedAcrossBorrowings() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        PreparedStatement physicalStatement;
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT id FROM items WHERE id = ?")) {
+            statement.setLong(1, 1);
+            statement.executeQuery();
+            physicalStatement = statement.unwrap(JdbcPreparedStatement.class);
+        }
+
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT id FROM items WHERE id = ?")) {
+            assertThat(statement.unwrap(JdbcPreparedStatement.class), sameInstance(physicalStatement));
+            assertThat(statement.getConnection(), sameInstance(connection));
+            assertThat(physicalStatement.isClosed(), is(false));
+        }
+        assertThat(pooledDataSource.getMetrics().getCreatedConnections(), equalTo(1L));
+    }
+
+    @Test
+    public void testStatementInUseIsNotShared() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement first = connection.prepareStatement("SELECT 1");
+             PreparedStatement second = connection.prepareStatement("SELECT 1")) {
+            assertThat(second.unwrap(JdbcPreparedStatement.class),
+                    not(sameInstance(first.unwrap(JdbcPreparedStatement.class))));
+        }
+    }
+
+    @Test
+    public void testStatementWithChangedSettingsIsNotReused() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        PreparedStatement physicalStatement;
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            statement.setEscapeProcessing(false);
+            physicalStatement = statement.unwrap(JdbcPreparedStatement.class);
+        }
+
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            assertThat(statement.unwrap(JdbcPreparedStatement.class), not(sameInstance(physicalStatement)));
+        }
+        assertThat(physicalStatement.isClosed(), is(true));
+    }
+
+    @Test
+    public void testStatementSettingsAreResetWhenReused() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        PreparedStatement physicalStatement;
+        int defaultFetchSize;
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            defaultFetchSize = statement.getFetchSize();
+            statement.setFetchSize(defaultFetchSize + 10);
+            statement.setMaxRows(1);
+            statement.setQueryTimeout(5);
+            physicalStatement = statement.unwrap(JdbcPreparedStatement.class);
+        }
+
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            assertThat(statement.unwrap(JdbcPreparedStatement.class), sameInstance(physicalStatement));
+            assertThat(statement.getFetchSize(), equalTo(defaultFetchSize));
+            assertThat(statement.getMaxRows(), equalTo(0));
+            assertThat(statement.getQueryTimeout(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void testStatementWithResultSetTypeIsCachedSeparately() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        PreparedStatement physicalStatement;
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1",
+                     ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)) {
+            physicalStatement = statement.unwrap(JdbcPreparedStatement.class);
+        }
+
+        try (Connection connection = pooledDataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT 1",
+                    ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)) {
+                assertThat(statement.unwrap(JdbcPreparedStatement.class), sameInstance(physicalStatement));
+                assertThat(statement.getResultSetType(), equalTo(ResultSet.TYPE_SCROLL_INSENSITIVE));
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+                assertThat(statement.unwrap(JdbcPreparedStatement.class), not(sameInstance(physicalStatement)));
+                assertThat(statement.getResultSetType(), equalTo(ResultSet.TYPE_FORWARD_ONLY));
+            }
+        }
+    }
+
+    @Test
+    public void testStatementIsNotCachedWhenCacheIsDisabled() throws SQLException {
+        createPool(PoolConfig.builder().statementCacheSize(0).build());
+        PreparedStatement physicalStatement;
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            physicalStatement = statement.unwrap(JdbcPreparedStatement.class);
+        }
+
+        assertThat(physicalStatement.isClosed(), is(true));
+    }
+
+    @Test
+    public void testCachedStatementsAreClosedWithConnection() throws SQLException, InterruptedException {
+        createPool(PoolConfig.builder().maxLifetime(50).build());
+        PreparedStatement physicalStatement;
+        try (Connection connection = pooledDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            physicalStatement = statement.unwrap(JdbcPreparedStatement.class);
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        pooledDataSource.getConnection().close();
+
+        assertThat(physicalStatement.isClosed(), is(true));
+    }
+
+    @Test
+    public void testClosedPoolRejectsBorrowing() throws SQLException {
+        createPool(PoolConfig.defaultConfig());
+        Connection connection = pooledDataSource.getConnection();
+        pooledDataSource.close();
+
+        assertThrows(SQLException.class, () -> pooledDataSource.getConnection());
+        connection.close();
+        assertThat(pooledDataSource.getMetrics().getTotalConnections(), equalTo(0));
+    }
+}
@@ -0,0 +1,130 @@
+package ua.procamp.util.pool;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * {@link TestDataSource} creates H2 connections whose state can be changed by tests. H2 ignores the read-only hint,
+ * so the flag is kept by the connection itself. A connection can be made invalid, or made to fail every call with a
+ * connection error.
+ */
+class TestDataSource implements DataSource {
+    private final JdbcDataSource h2DataSource = new JdbcDataSource();
+    private final List<TestConnection> connections = new CopyOnWriteArrayList<>();
+
+    TestDataSource(String databaseName) {
+        h2DataSource.setURL(String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1", databaseName));
+        h2DataSource.setUser("sa");
+    }
+
+    List<TestConnection> getConnections() {
+        return connections;
+    }
+
+    TestConnection lastConnection() {
+        return connections.get(connections.size() - 1);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        TestConnection testConnection = new TestConnection(h2DataSource.getConnection());
+        connections.add(testConnection);
+        return testConnection.proxy;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException("Not a wrapper");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return false;
+    }
+
+    static class TestConnection {
+        private final Connection connection;
+        private final Connection proxy;
+        private volatile boolean readOnly;
+        private volatile boolean valid = true;
+        private volatile boolean failing;
+
+        private TestConnection(Connection connection) {
+            this.connection = connection;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                            case "isClosed":
+                                break;
+                            case "isValid":
+                                return valid && connection.isValid((Integer) args[0]);
+                            case "setReadOnly":
+                                readOnly = (Boolean) args[0];
+                                return null;
+                            case "isReadOnly":
+                                return readOnly;
+                            default:
+                                if (failing) {
+                                    throw new SQLException("Connection lost", "08006");
+                                }
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        void invalidate() {
+            valid = false;
+        }
+
+        void fail() {
+            failing = true;
+        }
+
+        boolean isClosed() throws SQLException {
+            return connection.isClosed();
+        }
+    }
+}
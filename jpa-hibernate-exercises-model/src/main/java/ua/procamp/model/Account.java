@@ -15,7 +15,7 @@ import java.util.List;
 @ToString
 @EqualsAndHashCode(of = "id")
 @Entity
-@Table(name = "account")
+@Table(name = "account", indexes = @Index(name = "account_creation_time_id_idx", columnList = "creation_time, id"))
 public class Account {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -2,9 +2,15 @@ package ua.procamp.util;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+/**
+ * {@link EntityManagerUtil} runs a piece of work within a transaction. If the current thread has a {@link UnitOfWork}
+ * of the same {@link EntityManagerFactory}, the work joins its entity manager and transaction, otherwise a new
+ * entity manager and transaction are used for this piece of work only.
+ */
 public class EntityManagerUtil {
     private EntityManagerFactory entityManagerFactory;
 
@@ -13,28 +19,58 @@ public class EntityManagerUtil {
     }
 
     public void performWithinTx(Consumer<EntityManager> entityManagerConsumer) {
-        EntityManager entityManager = entityManagerFactory.createEntityManager();
-        entityManager.getTransaction().begin();
-        try {
+        performReturningWithinTx(entityManager -> {
             entityManagerConsumer.accept(entityManager);
-            entityManager.getTransaction().commit();
+            return null;
+        });
+    }
+
+    public <T> T performReturningWithinTx(Function<EntityManager, T> entityManagerFunction) {
+        Optional<UnitOfWork> unitOfWork = UnitOfWork.current(entityManagerFactory);
+        if (unitOfWork.isPresent()) {
+            if (unitOfWork.get().isReadOnly()) {
+                throw new IllegalStateException("Cannot change data within a read-only unit of work");
+            }
+            return joinUnitOfWork(unitOfWork.get(), entityManagerFunction);
+        }
+        return performInNewTx(entityManagerFunction, false);
+    }
+
+    /**
+     * Runs a piece of work that only reads data. Outside of a {@link UnitOfWork} it uses a read-only session that is
+     * never flushed, so loaded entities are not checked for changes on commit.
+     */
+    public <T> T performReadOnly(Function<EntityManager, T> entityManagerFunction) {
+        Optional<UnitOfWork> unitOfWork = UnitOfWork.current(entityManagerFactory);
+        if (unitOfWork.isPresent()) {
+            return joinUnitOfWork(unitOfWork.get(), entityManagerFunction);
+        }
+        return performInNewTx(entityManagerFunction, true);
+    }
+
+    private <T> T joinUnitOfWork(UnitOfWork unitOfWork, Function<EntityManager, T> entityManagerFunction) {
+        try {
+            return entityManagerFunction.apply(unitOfWork.getEntityManager());
         } catch (Exception e) {
-            entityManager.getTransaction().rollback();
+            unitOfWork.setRollbackOnly();
             throw e;
-        } finally {
-            entityManager.close();
         }
     }
 
-    public <T> T performReturningWithinTx(Function<EntityManager, T> entityManagerFunction) {
+    private <T> T performInNewTx(Function<EntityManager, T> entityManagerFunction, boolean readOnly) {
         EntityManager entityManager = entityManagerFactory.createEntityManager();
         entityManager.getTransaction().begin();
+        if (readOnly) {
+            UnitOfWork.makeReadOnly(entityManager);
+        }
         try {
             T result = entityManagerFunction.apply(entityManager);
             entityManager.getTransaction().commit();
             return result;
         } catch (Exception e) {
-            entityManager.getTransaction().rollback();
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
             throw e;
         } finally {
             entityManager.close();
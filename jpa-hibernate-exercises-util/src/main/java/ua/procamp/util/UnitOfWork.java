@@ -0,0 +1,158 @@
+package ua.procamp.util;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * {@link UnitOfWork} holds one {@link EntityManager} and its transaction, and binds them to the current thread,
+ * so that several DAO calls that use {@link EntityManagerUtil} of the same {@link EntityManagerFactory} share them
+ * instead of creating their own. Changes are committed by {@link UnitOfWork#commit()}, a unit of work that is closed
+ * without commit is rolled back.
+ * <pre>{@code
+ * try (UnitOfWork unitOfWork = UnitOfWork.begin(emf)) {
+ *     Account account = accountDao.findById(id);
+ *     account.setBalance(balance);
+ *     accountDao.update(account);
+ *     unitOfWork.commit();
+ * }
+ * }</pre>
+ * A read-only unit of work uses a read-only session that is never flushed, so it does not check loaded entities
+ * for changes and cannot be used for writes.
+ */
+public class UnitOfWork implements AutoCloseable {
+    private static final ThreadLocal<Map<EntityManagerFactory, UnitOfWork>> CURRENT = ThreadLocal.withInitial(HashMap::new);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityManager entityManager;
+    private final boolean readOnly;
+    private final List<Runnable> completionCallbacks = new ArrayList<>();
+
+    private UnitOfWork(EntityManagerFactory entityManagerFactory, boolean readOnly) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityManager = entityManagerFactory.createEntityManager();
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Starts a new unit of work and binds it to the current thread.
+     *
+     * @throws IllegalStateException if the current thread already has a unit of work of the same factory
+     */
+    public static UnitOfWork begin(EntityManagerFactory entityManagerFactory) {
+        return begin(entityManagerFactory, false);
+    }
+
+    /**
+     * Starts a new read-only unit of work and binds it to the current thread.
+     *
+     * @throws IllegalStateException if the current thread already has a unit of work of the same factory
+     */
+    public static UnitOfWork beginReadOnly(EntityManagerFactory entityManagerFactory) {
+        return begin(entityManagerFactory, true);
+    }
+
+    private static UnitOfWork begin(EntityManagerFactory entityManagerFactory, boolean readOnly) {
+        Objects.requireNonNull(entityManagerFactory);
+        Map<EntityManagerFactory, UnitOfWork> current = CURRENT.get();
+        if (current.containsKey(entityManagerFactory)) {
+            throw new IllegalStateException("Unit of work is already started in the current thread");
+        }
+        UnitOfWork unitOfWork = new UnitOfWork(entityManagerFactory, readOnly);
+        try {
+            unitOfWork.entityManager.getTransaction().begin();
+            if (readOnly) {
+                makeReadOnly(unitOfWork.entityManager);
+            }
+        } catch (RuntimeException e) {
+            unitOfWork.entityManager.close();
+            throw e;
+        }
+        current.put(entityManagerFactory, unitOfWork);
+        return unitOfWork;
+    }
+
+    static void makeReadOnly(EntityManager entityManager) {
+        Session session = entityManager.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+    }
+
+    /**
+     * Returns a unit of work of the given factory that is bound to the current thread.
+     */
+    public static Optional<UnitOfWork> current(EntityManagerFactory entityManagerFactory) {
+        return Optional.ofNullable(CURRENT.get().get(entityManagerFactory));
+    }
+
+    public EntityManager getEntityManager() {
+        return entityManager;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Registers a callback that is run after the unit of work is committed or rolled back, e.g. to invalidate
+     * cached data that was changed within the unit of work.
+     */
+    public void afterCompletion(Runnable callback) {
+        completionCallbacks.add(Objects.requireNonNull(callback));
+    }
+
+    /**
+     * Marks the transaction so that it is rolled back instead of committed. It is used when one of the joined
+     * operations fails.
+     */
+    public void setRollbackOnly() {
+        if (entityManager.getTransaction().isActive()) {
+            entityManager.getTransaction().setRollbackOnly();
+        }
+    }
+
+    /**
+     * Commits the transaction and closes the unit of work.
+     *
+     * @throws javax.persistence.RollbackException if the transaction was marked for rollback, or commit failed
+     */
+    public void commit() {
+        try {
+            entityManager.getTransaction().commit();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Rolls back the transaction if it was not committed, closes the entity manager, and unbinds the unit of work
+     * from the current thread.
+     */
+    @Override
+    public void close() {
+        if (!entityManager.isOpen()) {
+            return;
+        }
+        try {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+        } finally {
+            entityManager.close();
+            Map<EntityManagerFactory, UnitOfWork> current = CURRENT.get();
+            current.remove(entityManagerFactory, this);
+            if (current.isEmpty()) {
+                CURRENT.remove();
+            }
+            completionCallbacks.forEach(Runnable::run);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package ua.procamp.locking;
 
-import org.postgresql.ds.PGSimpleDataSource;
+import ua.procamp.util.JdbcUtil;
+import ua.procamp.util.pool.PoolConfig;
+import ua.procamp.util.pool.PooledDataSource;
 
 import javax.sql.DataSource;
 
@@ -15,19 +17,18 @@ public class DataSourceProvider {
         if (dataSource == null) {
             synchronized (DataSourceProvider.class) {
                 if (dataSource == null) {
-                    dataSource = createPostgresDataSource(databaseUrl, username, password);
+                    dataSource = JdbcUtil.createPooledDataSource(databaseUrl, username, password);
                 }
             }
         }
         return dataSource;
     }
 
-    private static DataSource createPostgresDataSource(String url, String username, String pass) {
-        PGSimpleDataSource dataSource = new PGSimpleDataSource();
-        dataSource.setUrl(url);
-        dataSource.setUser(username);
-        dataSource.setPassword(pass);
-        return dataSource;
+    /**
+     * Creates a new connection pool to the same database, that is not shared
+     */
+    public static PooledDataSource createDataSource(PoolConfig config) {
+        return JdbcUtil.createPooledDataSource(databaseUrl, username, password, config);
     }
 
 }
@@ -1,82 +1,154 @@
 package ua.procamp.locking;
 
 import ua.procamp.locking.exception.OptimisticLockingException;
+import ua.procamp.locking.exception.PessimisticLockingException;
+import ua.procamp.locking.harness.HarnessConfig;
+import ua.procamp.locking.harness.LoadHarness;
+import ua.procamp.locking.harness.LoadResult;
+import ua.procamp.locking.harness.UpdateStrategy;
 import ua.procamp.locking.optimistic.OptimisticLockingDao;
+import ua.procamp.locking.optimistic.RetryConfig;
+import ua.procamp.locking.pessimistic.LockConfig;
+import ua.procamp.locking.pessimistic.LockMode;
 import ua.procamp.locking.pessimistic.PessimisticLockingDao;
+import ua.procamp.util.JdbcUtil;
+import ua.procamp.util.pool.PoolConfig;
+import ua.procamp.util.pool.PooledDataSource;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Compares {@link OptimisticLockingDao} with {@link PessimisticLockingDao} in every {@link LockMode} under the same
+ * contended load, on an in-memory H2 database and on PostgreSQL from {@link DataSourceProvider} when it is available.
+ * See {@link HarnessConfig} for settings, e.g.
+ * <pre>
+ * mvn -pl optimistic-locking exec:java -Dexec.mainClass=ua.procamp.locking.Main -Dharness.workers=64 -Dharness.skew=1.2
+ * </pre>
+ * <b>The harness replaces all rows of the {@code programs} table</b> in both databases.
+ */
 public class Main {
+    private static final String H2_URL = "jdbc:h2:mem:locking_harness;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false";
 
-    private static OptimisticLockingDao olDao = new OptimisticLockingDao(
-            DataSourceProvider.getDataSource()
-    );
-    private static PessimisticLockingDao plDao = new PessimisticLockingDao(
-            DataSourceProvider.getDataSource()
-    );
-    private static AtomicBoolean noLocks = new AtomicBoolean(true);
+    public static void main(String[] args) throws SQLException, InterruptedException {
+        HarnessConfig config = HarnessConfig.fromSystemProperties();
+        PoolConfig poolConfig = PoolConfig.builder().maxPoolSize(config.getPoolSize()).build();
+        LoadHarness harness = new LoadHarness(config);
+        System.out.println(config);
+        System.out.println(LoadResult.formatHeader());
 
-    public static void main(String[] args) throws InterruptedException {
-        // testOptimisticLocking();
+        try (PooledDataSource h2DataSource = JdbcUtil.createPooledDataSource(H2_URL, "harness", "harness", poolConfig)) {
+            runAll(harness, "H2", h2DataSource);
+        }
+        try (PooledDataSource postgresDataSource = DataSourceProvider.createDataSource(poolConfig)) {
+            if (isAvailable(postgresDataSource)) {
+                runAll(harness, "PostgreSQL", postgresDataSource);
+            } else {
+                System.out.println("PostgreSQL is not available, skipped");
+            }
+        }
+    }
 
-        testPessimisticLocking();
+    private static void runAll(LoadHarness harness, String database, DataSource dataSource)
+            throws SQLException, InterruptedException {
+        for (UpdateStrategy strategy : createStrategies(dataSource)) {
+            System.out.println(harness.run(database, dataSource, strategy).format());
+        }
     }
 
-    private static void testPessimisticLocking() throws InterruptedException {
-        Program program1 = olDao.findProgramById(1L).get();
-        program1.name = "empty";
-        plDao.updateProgram(program1);
-        for(int i = 0; i < 3; ++i) {
-            startAppendingPessimisticThread();
+    private static boolean isAvailable(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return true;
+        } catch (SQLException e) {
+            return false;
         }
     }
 
-    private static void startAppendingPessimisticThread() {
-        new Thread(() -> {
-            for(int i = 0; i < 10; ++i) {
-                appendPessimisticOneToTheProgram1Name();
-            }
-        }).start();
+    private static List<UpdateStrategy> createStrategies(DataSource dataSource) {
+        List<UpdateStrategy> strategies = new ArrayList<>();
+        strategies.add(new OptimisticStrategy(new OptimisticLockingDao(dataSource, RetryConfig.defaultConfig())));
+        for (LockMode lockMode : LockMode.values()) {
+            LockConfig lockConfig = LockConfig.builder().lockMode(lockMode).build();
+            strategies.add(new PessimisticStrategy(new PessimisticLockingDao(dataSource, lockConfig), lockMode));
+        }
+        return strategies;
     }
 
-    private static void appendPessimisticOneToTheProgram1Name() {
-        Program p1 = plDao.findProgramById(1L).get();
-        p1.name += "1";
-        plDao.updateProgram(p1);
-        int plen = p1.name.length();
-        p1.name = p1.name.substring(0, plen - 1);
-        plDao.updateProgram(p1);
+    private static Program increment(Program program) {
+        program.name = String.valueOf(Long.parseLong(program.name) + 1);
+        return program;
     }
 
-    private static void testOptimisticLocking() throws InterruptedException {
-        Program program1 = olDao.findProgramById(1L).get();
-        program1.name = "empty";
-        olDao.updateProgram(program1);
-        while (noLocks.get()) {
-            startAppendingOptimisticThread();
-            Thread.sleep(100);
+    private static class OptimisticStrategy implements UpdateStrategy {
+        private final OptimisticLockingDao dao;
+
+        OptimisticStrategy(OptimisticLockingDao dao) {
+            this.dao = dao;
+        }
+
+        @Override
+        public String getName() {
+            return "optimistic with retry";
         }
-    }
 
-    private static void startAppendingOptimisticThread() {
-        new Thread(() -> {
-            while (noLocks.get()) {
-                try {
-                    appendOptimisticOneToTheProgram1Name();
-                } catch (OptimisticLockingException lockingException) {
-                    System.out.println("Received an optimistic locking exception!");
-                    noLocks.set(false);
-                }
+        @Override
+        public boolean increment(long programId) {
+            try {
+                dao.updateWithRetry(programId, Main::increment);
+                return true;
+            } catch (OptimisticLockingException e) {
+                return false;
             }
-        }).start();
+        }
+
+        @Override
+        public long getAttemptCount() {
+            return dao.getConflictMetrics().getAttemptCount();
+        }
+
+        @Override
+        public long getConflictCount() {
+            return dao.getConflictMetrics().getConflictCount();
+        }
     }
 
-    private static void appendOptimisticOneToTheProgram1Name() {
-        Program p1 = olDao.findProgramById(1L).get();
-        p1.name += "1";
-        olDao.updateProgram(p1);
-        int plen = p1.name.length();
-        p1.name = p1.name.substring(0, plen - 1);
-        olDao.updateProgram(p1);
+    private static class PessimisticStrategy implements UpdateStrategy {
+        private final PessimisticLockingDao dao;
+        private final LockMode lockMode;
+
+        PessimisticStrategy(PessimisticLockingDao dao, LockMode lockMode) {
+            this.dao = dao;
+            this.lockMode = lockMode;
+        }
+
+        @Override
+        public String getName() {
+            return "pessimistic " + lockMode;
+        }
+
+        @Override
+        public boolean increment(long programId) {
+            try {
+                return dao.updateWithLock(programId, Main::increment).isPresent();
+            } catch (PessimisticLockingException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public long getAttemptCount() {
+            return dao.getLockWaitHistogram().getCount();
+        }
+
+        /**
+         * Counts locks that were not acquired, since waiting for a lock is not reported by the database
+         */
+        @Override
+        public long getConflictCount() {
+            return dao.getLockFailureCount() + dao.getSkippedCount();
+        }
     }
 }
@@ -6,7 +6,18 @@ public class ProgramQueries {
     public static String SELECT_PROGRAM_BY_ID_AND_VER_QUERY = "select * from programs where id = ? and version = ?;";
     public static String SELECT_PROGRAM_BY_ID_QUERY = "select * from programs where id = ?;";
     public static String SELECT_PROGRAM_BY_ID_BLOCKING_QUERY = "select * from programs where id = ? for update;";
+    public static String SELECT_PROGRAM_BY_ID_NOWAIT_QUERY = "select * from programs where id = ? for update nowait;";
+    public static String SELECT_PROGRAM_BY_ID_SKIP_LOCKED_QUERY = "select * from programs where id = ? for update skip locked;";
+    public static String SET_LOCAL_LOCK_TIMEOUT_POSTGRES_QUERY = "set local lock_timeout = %d";
+    public static String SELECT_LOCK_TIMEOUT_H2_QUERY = "select lock_timeout()";
+    public static String SET_LOCK_TIMEOUT_H2_QUERY = "SET LOCK_TIMEOUT %d";
     public static String UPDATE_PROGRAM_QUERY = "update programs set (name, version) = (?, ?) where id = ? and version = ?";
+    public static String COMPARE_AND_SET_PROGRAM_QUERY = "update programs set name = ?, version = version + 1 where id = ? and version = ?";
     public static String UPDATE_PROGRAM_NO_VER_QUERY = "update programs set name = ? where id = ?";
+    public static String UPDATE_LOCKED_PROGRAM_QUERY = "update programs set name = ?, version = version + 1 where id = ?";
+    public static String CREATE_PROGRAMS_TABLE_QUERY = "create table if not exists programs (id bigint primary key, name varchar(255) not null, version bigint not null)";
+    public static String DELETE_ALL_PROGRAMS_QUERY = "delete from programs";
+    public static String INSERT_PROGRAM_QUERY = "insert into programs (id, name, version) values (?, ?, ?)";
+    public static String SELECT_ALL_PROGRAM_NAMES_QUERY = "select name from programs";
 
 }
@@ -0,0 +1,73 @@
+package ua.procamp.locking.harness;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link HarnessConfig} holds settings of {@link LoadHarness}. All durations are in seconds. Every setting can be
+ * overridden by a system property with the {@code harness.} prefix, e.g. {@code -Dharness.workers=64}.
+ */
+@Getter
+@Builder
+@ToString
+public class HarnessConfig {
+    private static final String PROPERTY_PREFIX = "harness.";
+
+    /**
+     * Number of threads that update programs concurrently
+     */
+    @Builder.Default
+    private final int workers = 16;
+    /**
+     * Runs workers on virtual threads when the JVM supports them (Java 21+), on platform threads otherwise
+     */
+    @Builder.Default
+    private final boolean virtualThreads = false;
+    /**
+     * Maximum number of database connections shared by workers
+     */
+    @Builder.Default
+    private final int poolSize = 16;
+    /**
+     * Number of programs that workers update
+     */
+    @Builder.Default
+    private final int programs = 1_000;
+    /**
+     * Exponent of the Zipf distribution programs are picked with. Zero picks programs uniformly, bigger values make
+     * a few programs hot
+     */
+    @Builder.Default
+    private final double skew = 1.0;
+    /**
+     * Time workers run before measurement starts
+     */
+    @Builder.Default
+    private final long warmup = 2;
+    /**
+     * Time workers are measured
+     */
+    @Builder.Default
+    private final long duration = 10;
+    /**
+     * Seed of the generators that pick programs, so that runs are reproducible
+     */
+    @Builder.Default
+    private final long seed = 42;
+
+    public static HarnessConfig fromSystemProperties() {
+        HarnessConfig defaults = HarnessConfig.builder().build();
+        return HarnessConfig.builder()
+                .workers(Integer.getInteger(PROPERTY_PREFIX + "workers", defaults.workers))
+                .virtualThreads(Boolean.parseBoolean(
+                        System.getProperty(PROPERTY_PREFIX + "virtualThreads", String.valueOf(defaults.virtualThreads))))
+                .poolSize(Integer.getInteger(PROPERTY_PREFIX + "poolSize", defaults.poolSize))
+                .programs(Integer.getInteger(PROPERTY_PREFIX + "programs", defaults.programs))
+                .skew(Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "skew", String.valueOf(defaults.skew))))
+                .warmup(Long.getLong(PROPERTY_PREFIX + "warmup", defaults.warmup))
+                .duration(Long.getLong(PROPERTY_PREFIX + "duration", defaults.duration))
+                .seed(Long.getLong(PROPERTY_PREFIX + "seed", defaults.seed))
+                .build();
+    }
+}
@@ -0,0 +1,218 @@
+package ua.procamp.locking.harness;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static ua.procamp.locking.ProgramQueries.*;
+
+/**
+ * {@link LoadHarness} runs workers that increment counters of programs picked with a {@link ZipfDistribution}, for
+ * a fixed time, and measures commits, conflicts, aborts and latency of an {@link UpdateStrategy}.
+ * <p>
+ * Every run starts from the same data: the {@code programs} table is created if needed and <b>all its rows are
+ * replaced</b> with {@link HarnessConfig#getPrograms()} programs with zero counters. Warmup operations are not
+ * measured, but they are counted when the database is checked for lost updates at the end of the run.
+ */
+public class LoadHarness {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadHarness.class);
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final HarnessConfig config;
+    private final ZipfDistribution distribution;
+    private final ThreadFactory threadFactory;
+
+    public LoadHarness(HarnessConfig config) {
+        if (config.getWorkers() <= 0) {
+            throw new IllegalArgumentException("Number of workers should be positive");
+        }
+        this.config = config;
+        this.distribution = new ZipfDistribution(config.getPrograms(), config.getSkew());
+        this.threadFactory = createThreadFactory();
+    }
+
+    public LoadResult run(String database, DataSource dataSource, UpdateStrategy strategy)
+            throws SQLException, InterruptedException {
+        resetPrograms(dataSource);
+        RunState state = new RunState();
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < config.getWorkers(); i++) {
+            Worker worker = new Worker(strategy, state, new Random(config.getSeed() + i));
+            workers.add(worker);
+            threads.add(threadFactory.newThread(worker));
+        }
+        threads.forEach(Thread::start);
+
+        TimeUnit.SECONDS.sleep(config.getWarmup());
+        long initialAttempts = strategy.getAttemptCount();
+        long initialConflicts = strategy.getConflictCount();
+        long measurementStart = System.nanoTime();
+        state.measuring = true;
+        TimeUnit.SECONDS.sleep(config.getDuration());
+        state.measuring = false;
+        long elapsedNanos = System.nanoTime() - measurementStart;
+        long attempts = strategy.getAttemptCount() - initialAttempts;
+        long conflicts = strategy.getConflictCount() - initialConflicts;
+        state.running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] latencies = mergeLatencies(workers);
+        long totalCommits = workers.stream().mapToLong(worker -> worker.totalCommitCount).sum();
+        return LoadResult.builder()
+                .database(database)
+                .strategy(strategy.getName())
+                .elapsedNanos(elapsedNanos)
+                .commitCount(workers.stream().mapToLong(worker -> worker.commitCount).sum())
+                .abortCount(workers.stream().mapToLong(worker -> worker.abortCount).sum())
+                .attemptCount(attempts)
+                .conflictCount(conflicts)
+                .p50Nanos(percentile(latencies, 50))
+                .p99Nanos(percentile(latencies, 99))
+                .lostUpdateCount(totalCommits - sumCounters(dataSource))
+                .build();
+    }
+
+    private void resetPrograms(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_PROGRAMS_TABLE_QUERY);
+                statement.execute(DELETE_ALL_PROGRAMS_QUERY);
+            }
+            try (PreparedStatement insertStatement = connection.prepareStatement(INSERT_PROGRAM_QUERY)) {
+                for (long id = 1; id <= config.getPrograms(); id++) {
+                    insertStatement.setLong(1, id);
+                    insertStatement.setString(2, "0");
+                    insertStatement.setLong(3, 0);
+                    insertStatement.addBatch();
+                    if (id % INSERT_BATCH_SIZE == 0) {
+                        insertStatement.executeBatch();
+                    }
+                }
+                insertStatement.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    private long sumCounters(DataSource dataSource) throws SQLException {
+        long sum = 0;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_ALL_PROGRAM_NAMES_QUERY)) {
+            while (resultSet.next()) {
+                sum += Long.parseLong(resultSet.getString(1));
+            }
+        }
+        return sum;
+    }
+
+    private ThreadFactory createThreadFactory() {
+        if (config.isVirtualThreads()) {
+            try {
+                // Thread.ofVirtual() appeared in Java 21, while the module is compiled for Java 11
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warn("Virtual threads are not supported by Java {}, platform threads are used",
+                        System.getProperty("java.version"));
+            }
+        }
+        return Thread::new;
+    }
+
+    private long[] mergeLatencies(List<Worker> workers) {
+        int count = workers.stream().mapToInt(worker -> worker.latencyCount).sum();
+        long[] latencies = new long[count];
+        int position = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, position, worker.latencyCount);
+            position += worker.latencyCount;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private long percentile(long[] sortedValues, double percentile) {
+        if (sortedValues.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(sortedValues.length * percentile / 100);
+        return sortedValues[Math.max(0, rank - 1)];
+    }
+
+    private static class RunState {
+        private volatile boolean running = true;
+        private volatile boolean measuring;
+    }
+
+    private class Worker implements Runnable {
+        private final UpdateStrategy strategy;
+        private final RunState state;
+        private final Random random;
+        private long[] latencies = new long[1024];
+        private int latencyCount;
+        private long commitCount;
+        private long abortCount;
+        private long totalCommitCount;
+
+        Worker(UpdateStrategy strategy, RunState state, Random random) {
+            this.strategy = strategy;
+            this.state = state;
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            while (state.running) {
+                long programId = distribution.sample(random);
+                boolean measured = state.measuring;
+                long start = System.nanoTime();
+                boolean committed = increment(programId);
+                long latency = System.nanoTime() - start;
+                if (committed) {
+                    totalCommitCount++;
+                }
+                if (measured) {
+                    record(committed, latency);
+                }
+            }
+        }
+
+        private boolean increment(long programId) {
+            try {
+                return strategy.increment(programId);
+            } catch (RuntimeException e) {
+                LOGGER.debug("Increment of program {} failed", programId, e);
+                return false;
+            }
+        }
+
+        private void record(boolean committed, long latency) {
+            if (committed) {
+                commitCount++;
+            } else {
+                abortCount++;
+            }
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[latencyCount++] = latency;
+        }
+    }
+}
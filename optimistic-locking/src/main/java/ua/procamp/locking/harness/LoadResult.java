@@ -0,0 +1,57 @@
+package ua.procamp.locking.harness;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LoadResult} holds what {@link LoadHarness} measured for one strategy on one database.
+ */
+@Getter
+@Builder
+@ToString
+public class LoadResult {
+    private final String database;
+    private final String strategy;
+    private final long elapsedNanos;
+    private final long commitCount;
+    private final long abortCount;
+    private final long attemptCount;
+    private final long conflictCount;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    /**
+     * Committed increments that are missing from the database at the end of the run, should always be zero
+     */
+    private final long lostUpdateCount;
+
+    public double getCommitsPerSecond() {
+        return elapsedNanos == 0 ? 0 : commitCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public double getConflictRate() {
+        return attemptCount == 0 ? 0 : (double) conflictCount / attemptCount;
+    }
+
+    public double getAbortRate() {
+        long operationCount = commitCount + abortCount;
+        return operationCount == 0 ? 0 : (double) abortCount / operationCount;
+    }
+
+    public String format() {
+        return String.format("%-10s %-24s %12.1f %9.2f%% %9.2f%% %10.3f %10.3f %6d", database, strategy,
+                getCommitsPerSecond(), getConflictRate() * 100, getAbortRate() * 100,
+                toMillis(p50Nanos), toMillis(p99Nanos), lostUpdateCount);
+    }
+
+    public static String formatHeader() {
+        return String.format("%-10s %-24s %12s %10s %10s %10s %10s %6s", "database", "strategy",
+                "commits/s", "conflicts", "aborts", "p50, ms", "p99, ms", "lost");
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,27 @@
+package ua.procamp.locking.harness;
+
+/**
+ * {@link UpdateStrategy} increments a counter kept in a program name, using one of the locking DAOs.
+ */
+public interface UpdateStrategy {
+
+    String getName();
+
+    /**
+     * Increments the counter of a program.
+     *
+     * @param programId program id
+     * @return true if the increment was committed, false if it was given up
+     */
+    boolean increment(long programId);
+
+    /**
+     * Returns the number of update attempts made so far, including retried ones
+     */
+    long getAttemptCount();
+
+    /**
+     * Returns the number of attempts that ran into another transaction so far
+     */
+    long getConflictCount();
+}
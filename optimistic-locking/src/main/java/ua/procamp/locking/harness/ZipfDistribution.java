@@ -0,0 +1,36 @@
+package ua.procamp.locking.harness;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * {@link ZipfDistribution} picks numbers from 1 to {@code n}, where the probability of {@code k} is proportional to
+ * {@code 1 / k^exponent}. The cumulative probabilities are computed once, so sampling is a binary search.
+ */
+public class ZipfDistribution {
+    private final double[] cumulativeProbabilities;
+
+    public ZipfDistribution(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Number of elements should be positive");
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("Exponent should not be negative");
+        }
+        cumulativeProbabilities = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cumulativeProbabilities[k - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulativeProbabilities[i] /= sum;
+        }
+    }
+
+    public long sample(Random random) {
+        int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        int element = index >= 0 ? index + 1 : -index;
+        return Math.min(element, cumulativeProbabilities.length);
+    }
+}
@@ -0,0 +1,33 @@
+package ua.procamp.locking.optimistic;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import ua.procamp.locking.Program;
+
+import java.util.List;
+
+/**
+ * {@link BatchUpdateResult} tells which programs of a batch were updated, and which ids lost the race because their
+ * programs were changed or removed after they had been read.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BatchUpdateResult {
+    private final List<Program> updatedPrograms;
+    private final List<Long> conflictedIds;
+
+    public int getUpdatedCount() {
+        return updatedPrograms.size();
+    }
+
+    public int getConflictedCount() {
+        return conflictedIds.size();
+    }
+
+    public boolean hasConflicts() {
+        return !conflictedIds.isEmpty();
+    }
+}
@@ -0,0 +1,30 @@
+package ua.procamp.locking.optimistic;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConflictMetrics} is a snapshot of {@link OptimisticLockingDao} update counters.
+ */
+@Getter
+@Builder
+@ToString
+public class ConflictMetrics {
+    private final long attemptCount;
+    private final long successCount;
+    private final long conflictCount;
+    private final long retryCount;
+    private final long exhaustedCount;
+    private final long totalBackoffNanos;
+
+    public double getConflictRate() {
+        return attemptCount == 0 ? 0 : (double) conflictCount / attemptCount;
+    }
+
+    public double getTotalBackoffMillis() {
+        return (double) totalBackoffNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
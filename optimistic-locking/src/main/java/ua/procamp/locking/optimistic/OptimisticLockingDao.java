@@ -8,30 +8,58 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 import static ua.procamp.locking.ProgramQueries.*;
 
 public class OptimisticLockingDao {
+    private static final int UPDATE_BATCH_SIZE = 1000;
 
     private final DataSource dataSource;
+    private final RetryConfig retryConfig;
+    private final LongAdder attemptCount = new LongAdder();
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder conflictCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder exhaustedCount = new LongAdder();
+    private final LongAdder totalBackoffNanos = new LongAdder();
 
     public OptimisticLockingDao(final DataSource dataSource) {
+        this(dataSource, RetryConfig.defaultConfig());
+    }
+
+    public OptimisticLockingDao(final DataSource dataSource, final RetryConfig retryConfig) {
+        if (retryConfig.getMaxAttempts() <= 0) {
+            throw new IllegalArgumentException("Maximum number of attempts should be positive");
+        }
         this.dataSource = dataSource;
+        this.retryConfig = retryConfig;
     }
 
     public Optional<Program> findProgramById(final Long programId) {
         Objects.requireNonNull(programId);
         Program result = null;
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = prepareSelectByIdProgramStatement(connection, programId);
-            ResultSet resultSet = statement.executeQuery();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = prepareSelectByIdProgramStatement(connection, programId);
+             ResultSet resultSet = statement.executeQuery()) {
             if (resultSet.next()) {
                 result = fetchProgramFromRow(resultSet);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new OptimisticLockingException(String.format("Error finding program with id %d", programId), e);
         }
         return Optional.ofNullable(result);
     }
@@ -40,14 +68,15 @@ public class OptimisticLockingDao {
         Objects.requireNonNull(program);
         Objects.requireNonNull(program.id);
         Program result = null;
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = prepareSelectByIdAndVerProgramStatement(connection, program.id, program.version);
-            ResultSet resultSet = statement.executeQuery();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = prepareSelectByIdAndVerProgramStatement(connection, program.id, program.version);
+             ResultSet resultSet = statement.executeQuery()) {
             if (resultSet.next()) {
                 result = fetchProgramFromRow(resultSet);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new OptimisticLockingException(
+                    String.format("Error finding program with id %d and version %d", program.id, program.version), e);
         }
         return Optional.ofNullable(result);
     }
@@ -72,49 +101,226 @@ public class OptimisticLockingDao {
                 .version(resultSet.getLong("version")).build();
     }
 
+    /**
+     * Updates a program name if its version in the database still equals {@code updatedProgram.version}. The check
+     * and the update are one statement, so no lock is held between them. On success the version of
+     * {@code updatedProgram} is incremented to the new one, so the same object can be updated again.
+     *
+     * @param updatedProgram program with a new name and the version it was read with
+     * @return number of updated rows
+     * @throws OptimisticLockingException if the program was changed or removed after it was read
+     */
     public int updateProgram(Program updatedProgram) throws OptimisticLockingException {
         Objects.requireNonNull(updatedProgram);
         Objects.requireNonNull(updatedProgram.id);
-        int updatedFieldsCount = 0;
+        Objects.requireNonNull(updatedProgram.version);
         try (Connection connection = getConnection()) {
-            connection.setAutoCommit(false);
-            try {
-                Optional<Program> programOptional = findSuchProgram(updatedProgram);
-                Program updatableProgram = programOptional.orElseThrow(
-                        () -> new OptimisticLockingException(
-                                String.format("Unsuccessful update of program with id %d and version = %d",
-                                        updatedProgram.id,
-                                        updatedProgram.version)
-                        )
+            if (!compareAndSetProgram(connection, updatedProgram)) {
+                throw new OptimisticLockingException(
+                        String.format("Unsuccessful update of program with id %d and version = %d",
+                                updatedProgram.id,
+                                updatedProgram.version)
                 );
-                updatableProgram.name = updatedProgram.name;
-                updatedFieldsCount = updateProgram(connection, updatableProgram);
-                if (updatedFieldsCount == 0) {
-                    throw new OptimisticLockingException(
-                            String.format("Unsuccessful update of program with id %d and version = %d",
-                                    updatedProgram.id,
-                                    updatedProgram.version)
-                    );
+            }
+            updatedProgram.version++;
+            return 1;
+        } catch (SQLException e) {
+            throw new OptimisticLockingException(
+                    String.format("Error updating program with id %d", updatedProgram.id), e);
+        }
+    }
+
+    /**
+     * Reads a program, applies an update to it and stores the result if nobody changed the program in between.
+     * On a conflict the program is read again and the update is applied again after a random delay that grows
+     * exponentially with every attempt, as {@link RetryConfig} says. The update function can be called several
+     * times, so it must not have side effects.
+     *
+     * @param programId program id
+     * @param update    function that gets a copy of the current program and returns it with a new name
+     * @return stored program with the new version
+     * @throws OptimisticLockingException if every attempt conflicted or the thread was interrupted while waiting
+     * @throws IllegalArgumentException   if there is no program with the given id
+     */
+    public Program updateWithRetry(Long programId, Function<Program, Program> update) throws OptimisticLockingException {
+        Objects.requireNonNull(programId);
+        Objects.requireNonNull(update);
+        long backoffBound = TimeUnit.MILLISECONDS.toNanos(retryConfig.getInitialBackoff());
+        for (int attempt = 1; ; attempt++) {
+            try (Connection connection = getConnection()) {
+                Program program = findProgramById(connection, programId).orElseThrow(() -> new IllegalArgumentException(
+                        String.format("Program with id = %d doesn't exist", programId)));
+                Program updatedProgram = Objects.requireNonNull(update.apply(copyOf(program)));
+                Program storedProgram = Program.builder()
+                        .id(program.id)
+                        .name(updatedProgram.name)
+                        .version(program.version).build();
+                if (compareAndSetProgram(connection, storedProgram)) {
+                    storedProgram.version++;
+                    return storedProgram;
                 }
-            } catch (OptimisticLockingException ole) {
+            } catch (SQLException e) {
+                throw new OptimisticLockingException(String.format("Error updating program with id %d", programId), e);
+            }
+            if (attempt == retryConfig.getMaxAttempts()) {
+                exhaustedCount.increment();
+                throw new OptimisticLockingException(
+                        String.format("Unsuccessful update of program with id %d after %d attempts", programId, attempt));
+            }
+            retryCount.increment();
+            backOff(programId, backoffBound);
+            backoffBound = nextBackoffBound(backoffBound);
+        }
+    }
+
+    /**
+     * Updates names of many programs in JDBC batches within one transaction. Every program is updated only if its
+     * version in the database still equals {@code program.version}, the same way as {@link #updateProgram} does, but
+     * a conflict does not fail the batch. Versions of updated programs are incremented to the new ones, so the
+     * conflicted subset can be read again and retried.
+     *
+     * @param programs programs with new names and the versions they were read with, ids must be unique
+     * @return updated programs and ids of programs that were changed or removed after they were read
+     */
+    public BatchUpdateResult updatePrograms(Collection<Program> programs) throws OptimisticLockingException {
+        List<Program> programList = requireUniqueIds(programs);
+        List<Program> updatedPrograms = new ArrayList<>();
+        List<Long> conflictedIds = new ArrayList<>();
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(COMPARE_AND_SET_PROGRAM_QUERY)) {
+                for (int from = 0; from < programList.size(); from += UPDATE_BATCH_SIZE) {
+                    List<Program> batch = programList.subList(from, Math.min(from + UPDATE_BATCH_SIZE, programList.size()));
+                    int[] updateCounts = executeCompareAndSetChunk(connection, statement, batch);
+                    for (int i = 0; i < batch.size(); i++) {
+                        Program program = batch.get(i);
+                        if (updateCounts[i] > 0) {
+                            updatedPrograms.add(program);
+                        } else {
+                            conflictedIds.add(program.id);
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
                 connection.rollback();
-                throw ole;
+                throw e;
             }
-            connection.commit();
-            return updatedFieldsCount;
         } catch (SQLException e) {
-            // ignore
+            throw new OptimisticLockingException(String.format("Error updating %d programs", programList.size()), e);
+        }
+        attemptCount.add(programList.size());
+        successCount.add(updatedPrograms.size());
+        conflictCount.add(conflictedIds.size());
+        updatedPrograms.forEach(program -> program.version++);
+        return new BatchUpdateResult(updatedPrograms, conflictedIds);
+    }
+
+    private List<Program> requireUniqueIds(Collection<Program> programs) {
+        Objects.requireNonNull(programs);
+        Set<Long> ids = new HashSet<>();
+        for (Program program : programs) {
+            Objects.requireNonNull(program);
+            Objects.requireNonNull(program.version);
+            if (!ids.add(Objects.requireNonNull(program.id))) {
+                throw new IllegalArgumentException(String.format("Program with id %d occurs more than once", program.id));
+            }
+        }
+        return new ArrayList<>(programs);
+    }
+
+    /**
+     * Drivers may return {@link Statement#SUCCESS_NO_INFO} instead of an update count. Then the chunk is rolled back to
+     * a savepoint and executed again one statement at a time, which always reports update counts.
+     */
+    private int[] executeCompareAndSetChunk(Connection connection, PreparedStatement statement, List<Program> programs)
+            throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        int[] updateCounts = executeCompareAndSetBatch(statement, programs);
+        if (Arrays.stream(updateCounts).anyMatch(updateCount -> updateCount == Statement.SUCCESS_NO_INFO)) {
+            connection.rollback(savepoint);
+            updateCounts = executeCompareAndSetOneByOne(statement, programs);
         }
-        return updatedFieldsCount;
+        connection.releaseSavepoint(savepoint);
+        return updateCounts;
     }
 
-    private int updateProgram(Connection connection, Program program) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(UPDATE_PROGRAM_QUERY);
+    private int[] executeCompareAndSetBatch(PreparedStatement statement, List<Program> programs) throws SQLException {
+        for (Program program : programs) {
+            setCompareAndSetParameters(statement, program);
+            statement.addBatch();
+        }
+        return statement.executeBatch();
+    }
+
+    private int[] executeCompareAndSetOneByOne(PreparedStatement statement, List<Program> programs) throws SQLException {
+        int[] updateCounts = new int[programs.size()];
+        for (int i = 0; i < programs.size(); i++) {
+            setCompareAndSetParameters(statement, programs.get(i));
+            updateCounts[i] = statement.executeUpdate();
+        }
+        return updateCounts;
+    }
+
+    private void setCompareAndSetParameters(PreparedStatement statement, Program program) throws SQLException {
         statement.setString(1, program.name);
-        statement.setLong(4, program.version);
-        statement.setLong(2, ++program.version);
-        statement.setLong(3, program.id);
-        return statement.executeUpdate();
+        statement.setLong(2, program.id);
+        statement.setLong(3, program.version);
+    }
+
+    private Optional<Program> findProgramById(Connection connection, Long programId) throws SQLException {
+        try (PreparedStatement statement = prepareSelectByIdProgramStatement(connection, programId);
+             ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? Optional.of(fetchProgramFromRow(resultSet)) : Optional.empty();
+        }
+    }
+
+    private Program copyOf(Program program) {
+        return Program.builder()
+                .id(program.id)
+                .name(program.name)
+                .version(program.version).build();
+    }
+
+    private boolean compareAndSetProgram(Connection connection, Program program) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(COMPARE_AND_SET_PROGRAM_QUERY)) {
+            setCompareAndSetParameters(statement, program);
+            attemptCount.increment();
+            if (statement.executeUpdate() == 0) {
+                conflictCount.increment();
+                return false;
+            }
+            successCount.increment();
+            return true;
+        }
+    }
+
+    private void backOff(Long programId, long backoffBound) {
+        long backoffNanos = ThreadLocalRandom.current().nextLong(backoffBound + 1);
+        totalBackoffNanos.add(backoffNanos);
+        try {
+            TimeUnit.NANOSECONDS.sleep(backoffNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OptimisticLockingException(
+                    String.format("Interrupted while retrying update of program with id %d", programId), e);
+        }
+    }
+
+    private long nextBackoffBound(long backoffBound) {
+        long maxBackoff = TimeUnit.MILLISECONDS.toNanos(retryConfig.getMaxBackoff());
+        return (long) Math.min(maxBackoff, backoffBound * retryConfig.getBackoffMultiplier());
+    }
+
+    public ConflictMetrics getConflictMetrics() {
+        return ConflictMetrics.builder()
+                .attemptCount(attemptCount.sum())
+                .successCount(successCount.sum())
+                .conflictCount(conflictCount.sum())
+                .retryCount(retryCount.sum())
+                .exhaustedCount(exhaustedCount.sum())
+                .totalBackoffNanos(totalBackoffNanos.sum())
+                .build();
     }
 
     private Connection getConnection() throws SQLException {
@@ -0,0 +1,39 @@
+package ua.procamp.locking.optimistic;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link RetryConfig} holds settings of {@link OptimisticLockingDao#updateWithRetry}. All durations are in
+ * milliseconds.
+ */
+@Getter
+@Builder
+@ToString
+public class RetryConfig {
+    /**
+     * Maximum number of update attempts, including the first one
+     */
+    @Builder.Default
+    private final int maxAttempts = 5;
+    /**
+     * Upper bound of the delay before the first retry
+     */
+    @Builder.Default
+    private final long initialBackoff = 5;
+    /**
+     * Upper bound of the delay before any retry
+     */
+    @Builder.Default
+    private final long maxBackoff = 200;
+    /**
+     * Factor the delay bound grows by after every conflict
+     */
+    @Builder.Default
+    private final double backoffMultiplier = 2.0;
+
+    public static RetryConfig defaultConfig() {
+        return RetryConfig.builder().build();
+    }
+}
@@ -0,0 +1,28 @@
+package ua.procamp.locking.pessimistic;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link LockConfig} holds settings of {@link PessimisticLockingDao}. All durations are in milliseconds.
+ */
+@Getter
+@Builder
+@ToString
+public class LockConfig {
+    /**
+     * What to do when a program is already locked
+     */
+    @Builder.Default
+    private final LockMode lockMode = LockMode.BLOCKING;
+    /**
+     * Maximum time to wait for a lock in {@link LockMode#TIMEOUT} mode
+     */
+    @Builder.Default
+    private final long lockTimeout = 1_000;
+
+    public static LockConfig defaultConfig() {
+        return LockConfig.builder().build();
+    }
+}
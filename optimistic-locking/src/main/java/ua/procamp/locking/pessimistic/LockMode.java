@@ -0,0 +1,25 @@
+package ua.procamp.locking.pessimistic;
+
+/**
+ * {@link LockMode} says what {@link PessimisticLockingDao} does when a program row is already locked by another
+ * transaction.
+ */
+public enum LockMode {
+    /**
+     * Waits until the lock is released, as long as the database allows
+     */
+    BLOCKING,
+    /**
+     * Fails at once with {@link ua.procamp.locking.exception.PessimisticLockingException}
+     */
+    NOWAIT,
+    /**
+     * Skips the locked program, so nothing is updated
+     */
+    SKIP_LOCKED,
+    /**
+     * Waits up to {@link LockConfig#getLockTimeout()} and then fails with
+     * {@link ua.procamp.locking.exception.PessimisticLockingException}
+     */
+    TIMEOUT
+}
@@ -0,0 +1,75 @@
+package ua.procamp.locking.pessimistic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link LockWaitHistogram} counts lock waits in buckets of powers of two microseconds. Bucket {@code i} counts waits
+ * from {@code 2^i} inclusive to {@code 2^(i + 1)} exclusive microseconds, the first bucket also counts waits shorter
+ * than a microsecond. Recording is thread safe and does not allocate.
+ */
+public class LockWaitHistogram {
+    public static final int BUCKET_COUNT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long waitNanos) {
+        long waitMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(waitNanos));
+        int bucket = Math.min(BUCKET_COUNT - 1, 63 - Long.numberOfLeadingZeros(waitMicros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, that is the upper bound of the bucket the percentile falls into.
+     *
+     * @param percentile percentile from 0 to 100
+     * @return percentile bound in milliseconds, or zero if nothing was recorded
+     */
+    public double getPercentileMillis(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile should be from 0 to 100");
+        }
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen > 0 && seen >= rank) {
+                return Math.min((double) (1L << (i + 1)) / 1000, getMaxWaitMillis());
+            }
+        }
+        return 0;
+    }
+
+    public double getMaxWaitMillis() {
+        return (double) maxWaitNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LockWaitHistogram(count=%d, p50=%.3fms, p99=%.3fms, max=%.3fms)",
+                getCount(), getPercentileMillis(50), getPercentileMillis(99), getMaxWaitMillis());
+    }
+}
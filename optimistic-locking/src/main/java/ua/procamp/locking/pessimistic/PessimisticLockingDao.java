@@ -1,43 +1,69 @@
 package ua.procamp.locking.pessimistic;
 
 import ua.procamp.locking.Program;
-import ua.procamp.locking.exception.OptimisticLockingException;
+import ua.procamp.locking.exception.PessimisticLockingException;
+import ua.procamp.util.SqlDialect;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 import static ua.procamp.locking.ProgramQueries.*;
 
+/**
+ * {@link PessimisticLockingDao} locks a program row with {@code SELECT ... FOR UPDATE} and updates it in the same
+ * transaction. What happens when the row is already locked depends on {@link LockConfig#getLockMode()}.
+ * <p>
+ * H2 supports neither {@code NOWAIT} nor {@code SKIP LOCKED}, so on H2 they are emulated with a zero lock timeout.
+ * H2 lock timeout is a session setting, so its previous value is restored before a connection is returned. If the
+ * restore fails after the update has failed, the restore failure is added to the update failure as suppressed.
+ */
 public class PessimisticLockingDao {
+    private static final String POSTGRES_LOCK_NOT_AVAILABLE = "55P03";
+    private static final int H2_LOCK_TIMEOUT_ERROR_CODE = 50200;
 
     private final DataSource dataSource;
+    private final LockConfig lockConfig;
+    private final LockWaitHistogram lockWaitHistogram = new LockWaitHistogram();
+    private final LongAdder lockFailureCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
 
     public PessimisticLockingDao(final DataSource dataSource) {
+        this(dataSource, LockConfig.defaultConfig());
+    }
+
+    public PessimisticLockingDao(final DataSource dataSource, final LockConfig lockConfig) {
+        if (lockConfig.getLockTimeout() < 0) {
+            throw new IllegalArgumentException("Lock timeout should not be negative");
+        }
         this.dataSource = dataSource;
+        this.lockConfig = lockConfig;
     }
 
     public Optional<Program> findProgramById(final Long programId) {
         Objects.requireNonNull(programId);
         Program program = null;
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = prepareSelectProgramStatement(connection, programId);
-            ResultSet resultSet = statement.executeQuery();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = prepareSelectProgramStatement(connection, SELECT_PROGRAM_BY_ID_QUERY, programId);
+             ResultSet resultSet = statement.executeQuery()) {
             if (resultSet.next()) {
                 program = fetchProgramFromRow(resultSet);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new PessimisticLockingException(String.format("Error finding program with id %d", programId), e);
         }
         return Optional.ofNullable(program);
     }
 
-    private PreparedStatement prepareSelectProgramStatement(Connection connection, Long programId) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(SELECT_PROGRAM_BY_ID_BLOCKING_QUERY);
+    private PreparedStatement prepareSelectProgramStatement(Connection connection, String query, Long programId) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(query);
         statement.setLong(1, programId);
         return statement;
     }
@@ -49,34 +75,202 @@ public class PessimisticLockingDao {
                 .version(resultSet.getLong("version")).build();
     }
 
+    /**
+     * Locks a program, then updates its name and increments its version in the same transaction.
+     *
+     * @param updatedProgram program with a new name
+     * @return number of updated rows, zero if the program does not exist or was skipped in
+     * {@link LockMode#SKIP_LOCKED} mode
+     * @throws PessimisticLockingException if the lock was not acquired in {@link LockMode#NOWAIT} or
+     *                                     {@link LockMode#TIMEOUT} mode, or the update failed
+     */
     public int updateProgram(Program updatedProgram) {
         Objects.requireNonNull(updatedProgram);
         Objects.requireNonNull(updatedProgram.id);
+        return updateWithLock(updatedProgram.id, program -> {
+            program.name = updatedProgram.name;
+            return program;
+        }).isPresent() ? 1 : 0;
+    }
+
+    /**
+     * Locks and reads a program, applies an update to it and stores the result in the same transaction, so nobody can
+     * change the program in between.
+     *
+     * @param programId program id
+     * @param update    function that gets the locked program and returns it with a new name
+     * @return stored program with the new version, empty if the program does not exist or was skipped in
+     * {@link LockMode#SKIP_LOCKED} mode
+     * @throws PessimisticLockingException if the lock was not acquired in {@link LockMode#NOWAIT} or
+     *                                     {@link LockMode#TIMEOUT} mode, or the update failed
+     */
+    public Optional<Program> updateWithLock(Long programId, Function<Program, Program> update) {
+        Objects.requireNonNull(programId);
+        Objects.requireNonNull(update);
         try (Connection connection = getConnection()) {
-            connection.setAutoCommit(false);
-            Optional<Program> programOptional = findProgramById(updatedProgram.id);
-            Program updatableProgram = null;
-            if (programOptional.isEmpty()) {
+            SqlDialect dialect = SqlDialect.of(connection);
+            long previousLockTimeout = changesH2LockTimeout(dialect) ? queryH2LockTimeout(connection) : 0;
+            Optional<Program> storedProgram;
+            try {
+                storedProgram = lockAndUpdate(connection, dialect, programId, update);
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    restoreLockTimeout(connection, dialect, previousLockTimeout);
+                } catch (SQLException restoreFailure) {
+                    e.addSuppressed(restoreFailure);
+                }
+                throw e;
+            }
+            restoreLockTimeout(connection, dialect, previousLockTimeout);
+            return storedProgram;
+        } catch (SQLException e) {
+            throw new PessimisticLockingException(String.format("Error updating program with id %d", programId), e);
+        }
+    }
+
+    private Optional<Program> lockAndUpdate(Connection connection, SqlDialect dialect, Long programId,
+                                            Function<Program, Program> update) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            setLockTimeout(connection, dialect);
+            Optional<Program> lockedProgram = lockProgram(connection, dialect, programId);
+            if (lockedProgram.isEmpty()) {
                 connection.rollback();
-                throw new SQLException(String.format("Program with id = %d doesn't exists", updatedProgram.id));
-            } else {
-                updatableProgram = programOptional.get();
+                return Optional.empty();
             }
-            updatableProgram.name = updatedProgram.name;
-            int updatedFieldsCount = updateProgram(connection, updatableProgram);
+            Program program = lockedProgram.get();
+            Program updatedProgram = Objects.requireNonNull(update.apply(program));
+            Program storedProgram = Program.builder()
+                    .id(programId)
+                    .name(updatedProgram.name)
+                    .version(program.version + 1).build();
+            updateProgram(connection, storedProgram);
             connection.commit();
-            return updatedFieldsCount;
+            return Optional.of(storedProgram);
         } catch (SQLException e) {
-            e.printStackTrace();
+            connection.rollback();
+            if (!isLockNotAvailable(e)) {
+                throw e;
+            }
+            if (lockConfig.getLockMode() == LockMode.SKIP_LOCKED) {
+                skippedCount.increment();
+                return Optional.empty();
+            }
+            lockFailureCount.increment();
+            throw new PessimisticLockingException(
+                    String.format("Program with id %d is locked by another transaction", programId), e);
+        } catch (RuntimeException e) {
+            connection.rollback();
+            throw e;
         }
-        return 0;
+    }
+
+    /**
+     * Locks a program row until the end of the current transaction.
+     *
+     * @return locked program, empty if it does not exist or was skipped
+     */
+    private Optional<Program> lockProgram(Connection connection, SqlDialect dialect, Long programId) throws SQLException {
+        Program program = null;
+        long lockStart = System.nanoTime();
+        try (PreparedStatement statement = prepareSelectProgramStatement(connection, lockQuery(dialect), programId);
+             ResultSet resultSet = statement.executeQuery()) {
+            if (resultSet.next()) {
+                program = fetchProgramFromRow(resultSet);
+            }
+        } finally {
+            lockWaitHistogram.record(System.nanoTime() - lockStart);
+        }
+        if (program == null && dialect == SqlDialect.POSTGRESQL && lockConfig.getLockMode() == LockMode.SKIP_LOCKED
+                && programExists(connection, programId)) {
+            skippedCount.increment();
+        }
+        return Optional.ofNullable(program);
+    }
+
+    /**
+     * PostgreSQL {@code SKIP LOCKED} returns no row for both a locked and a missing program, so a plain read tells
+     * them apart. Only a locked program is counted as skipped.
+     */
+    private boolean programExists(Connection connection, Long programId) throws SQLException {
+        try (PreparedStatement statement = prepareSelectProgramStatement(connection, SELECT_PROGRAM_BY_ID_QUERY, programId);
+             ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    private String lockQuery(SqlDialect dialect) {
+        if (dialect == SqlDialect.POSTGRESQL) {
+            switch (lockConfig.getLockMode()) {
+                case NOWAIT:
+                    return SELECT_PROGRAM_BY_ID_NOWAIT_QUERY;
+                case SKIP_LOCKED:
+                    return SELECT_PROGRAM_BY_ID_SKIP_LOCKED_QUERY;
+            }
+        }
+        return SELECT_PROGRAM_BY_ID_BLOCKING_QUERY;
+    }
+
+    private void setLockTimeout(Connection connection, SqlDialect dialect) throws SQLException {
+        LockMode lockMode = lockConfig.getLockMode();
+        if (dialect == SqlDialect.POSTGRESQL && lockMode == LockMode.TIMEOUT) {
+            execute(connection, String.format(SET_LOCAL_LOCK_TIMEOUT_POSTGRES_QUERY, lockConfig.getLockTimeout()));
+        } else if (changesH2LockTimeout(dialect)) {
+            long lockTimeout = lockMode == LockMode.TIMEOUT ? lockConfig.getLockTimeout() : 0;
+            execute(connection, String.format(SET_LOCK_TIMEOUT_H2_QUERY, lockTimeout));
+        }
+    }
+
+    // every lock mode but BLOCKING changes H2 session lock timeout, the only mode that needs it read and restored
+    private boolean changesH2LockTimeout(SqlDialect dialect) {
+        return dialect == SqlDialect.H2 && lockConfig.getLockMode() != LockMode.BLOCKING;
+    }
+
+    private long queryH2LockTimeout(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_LOCK_TIMEOUT_H2_QUERY)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private void restoreLockTimeout(Connection connection, SqlDialect dialect, long lockTimeout) throws SQLException {
+        if (changesH2LockTimeout(dialect)) {
+            execute(connection, String.format(SET_LOCK_TIMEOUT_H2_QUERY, lockTimeout));
+        }
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private boolean isLockNotAvailable(SQLException e) {
+        return POSTGRES_LOCK_NOT_AVAILABLE.equals(e.getSQLState()) || e.getErrorCode() == H2_LOCK_TIMEOUT_ERROR_CODE;
     }
 
     private int updateProgram(Connection connection, Program program) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(UPDATE_PROGRAM_NO_VER_QUERY);
-        statement.setString(1, program.name);
-        statement.setLong(2, program.id);
-        return statement.executeUpdate();
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_LOCKED_PROGRAM_QUERY)) {
+            statement.setString(1, program.name);
+            statement.setLong(2, program.id);
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the histogram of times spent on locking a program, including failed and skipped attempts.
+     */
+    public LockWaitHistogram getLockWaitHistogram() {
+        return lockWaitHistogram;
+    }
+
+    public long getLockFailureCount() {
+        return lockFailureCount.sum();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.sum();
     }
 
     private Connection getConnection() throws SQLException {
@@ -0,0 +1,57 @@
+package ua.procamp.locking;
+
+import ua.procamp.util.JdbcUtil;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static ua.procamp.locking.ProgramQueries.*;
+
+/**
+ * Creates and fills the {@code programs} table in an in-memory H2 database for tests.
+ */
+public class ProgramTable {
+
+    public static DataSource createH2DataSource(String databaseName) throws SQLException {
+        DataSource dataSource = JdbcUtil.createInMemoryH2DataSource(
+                String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false", databaseName), "sa", "");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_PROGRAMS_TABLE_QUERY);
+            statement.execute(DELETE_ALL_PROGRAMS_QUERY);
+        }
+        return dataSource;
+    }
+
+    public static void insertPrograms(DataSource dataSource, long count, long version) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_PROGRAM_QUERY)) {
+            for (long id = 1; id <= count; id++) {
+                statement.setLong(1, id);
+                statement.setString(2, "program " + id);
+                statement.setLong(3, version);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    public static Program findProgram(DataSource dataSource, long id) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_PROGRAM_BY_ID_QUERY)) {
+            statement.setLong(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next()
+                        ? Program.builder()
+                        .id(resultSet.getLong("id"))
+                        .name(resultSet.getString("name"))
+                        .version(resultSet.getLong("version")).build()
+                        : null;
+            }
+        }
+    }
+}
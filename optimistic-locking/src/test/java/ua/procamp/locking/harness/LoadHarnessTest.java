@@ -0,0 +1,121 @@
+package ua.procamp.locking.harness;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.procamp.locking.Program;
+import ua.procamp.locking.exception.OptimisticLockingException;
+import ua.procamp.locking.exception.PessimisticLockingException;
+import ua.procamp.locking.optimistic.OptimisticLockingDao;
+import ua.procamp.locking.pessimistic.LockConfig;
+import ua.procamp.locking.pessimistic.PessimisticLockingDao;
+import ua.procamp.util.JdbcUtil;
+import ua.procamp.util.pool.PoolConfig;
+import ua.procamp.util.pool.PooledDataSource;
+
+import java.sql.SQLException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LoadHarnessTest {
+    private static final HarnessConfig CONFIG = HarnessConfig.builder()
+            .workers(4)
+            .poolSize(4)
+            .programs(20)
+            .skew(1.2)
+            .warmup(0)
+            .duration(1)
+            .build();
+
+    private PooledDataSource dataSource;
+
+    @BeforeEach
+    public void setup() {
+        dataSource = JdbcUtil.createPooledDataSource("jdbc:h2:mem:load_harness_test;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false",
+                "sa", "", PoolConfig.builder().maxPoolSize(CONFIG.getPoolSize()).build());
+    }
+
+    @AfterEach
+    public void destroy() {
+        dataSource.close();
+    }
+
+    @Test
+    public void testOptimisticStrategyLosesNoUpdates() throws SQLException, InterruptedException {
+        OptimisticLockingDao dao = new OptimisticLockingDao(dataSource);
+        UpdateStrategy strategy = new UpdateStrategy() {
+            @Override
+            public String getName() {
+                return "optimistic";
+            }
+
+            @Override
+            public boolean increment(long programId) {
+                try {
+                    dao.updateWithRetry(programId, LoadHarnessTest::increment);
+                    return true;
+                } catch (OptimisticLockingException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public long getAttemptCount() {
+                return dao.getConflictMetrics().getAttemptCount();
+            }
+
+            @Override
+            public long getConflictCount() {
+                return dao.getConflictMetrics().getConflictCount();
+            }
+        };
+
+        LoadResult result = new LoadHarness(CONFIG).run("H2", dataSource, strategy);
+
+        assertThat(result.getCommitCount(), greaterThan(0L));
+        assertThat(result.getAttemptCount(), greaterThanOrEqualTo(result.getCommitCount()));
+        assertThat(result.getLostUpdateCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testBlockingStrategyLosesNoUpdates() throws SQLException, InterruptedException {
+        PessimisticLockingDao dao = new PessimisticLockingDao(dataSource, LockConfig.defaultConfig());
+        UpdateStrategy strategy = new UpdateStrategy() {
+            @Override
+            public String getName() {
+                return "pessimistic BLOCKING";
+            }
+
+            @Override
+            public boolean increment(long programId) {
+                try {
+                    return dao.updateWithLock(programId, LoadHarnessTest::increment).isPresent();
+                } catch (PessimisticLockingException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public long getAttemptCount() {
+                return dao.getLockWaitHistogram().getCount();
+            }
+
+            @Override
+            public long getConflictCount() {
+                return dao.getLockFailureCount();
+            }
+        };
+
+        LoadResult result = new LoadHarness(CONFIG).run("H2", dataSource, strategy);
+
+        assertThat(result.getCommitCount(), greaterThan(0L));
+        assertThat(result.getP99Nanos(), greaterThanOrEqualTo(result.getP50Nanos()));
+        assertThat(result.getLostUpdateCount(), equalTo(0L));
+    }
+
+    private static Program increment(Program program) {
+        program.name = String.valueOf(Long.parseLong(program.name) + 1);
+        return program;
+    }
+}
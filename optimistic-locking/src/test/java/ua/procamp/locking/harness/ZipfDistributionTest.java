@@ -0,0 +1,78 @@
+package ua.procamp.locking.harness;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ZipfDistributionTest {
+    private static final int SAMPLE_COUNT = 100_000;
+
+    @Test
+    public void testSampleIsWithinBounds() {
+        ZipfDistribution distribution = new ZipfDistribution(10, 1.2);
+        Random random = new Random(1);
+
+        long[] counts = sample(distribution, random, 10);
+
+        assertThat(LongStream.of(counts).sum(), equalTo((long) SAMPLE_COUNT));
+        assertThat(LongStream.of(counts).allMatch(count -> count > 0), is(true));
+        assertThat(new ZipfDistribution(1, 1.0).sample(random), equalTo(1L));
+    }
+
+    @Test
+    public void testZeroExponentIsUniform() {
+        ZipfDistribution distribution = new ZipfDistribution(4, 0);
+
+        long[] counts = sample(distribution, new Random(2), 4);
+
+        for (long count : counts) {
+            assertThat((double) count, closeTo(SAMPLE_COUNT / 4.0, SAMPLE_COUNT * 0.01));
+        }
+    }
+
+    @Test
+    public void testPositiveExponentPrefersSmallElements() {
+        ZipfDistribution distribution = new ZipfDistribution(10, 1.0);
+
+        long[] counts = sample(distribution, new Random(3), 10);
+
+        // probability of k is 1 / (k * H(10)), where H(10) is about 2.929
+        assertThat((double) counts[0] / SAMPLE_COUNT, closeTo(0.341, 0.01));
+        assertThat((double) counts[9] / SAMPLE_COUNT, closeTo(0.034, 0.005));
+        for (int i = 1; i < counts.length; i++) {
+            assertThat(counts[i], lessThan(counts[i - 1]));
+        }
+    }
+
+    @Test
+    public void testSameSeedIsReproducible() {
+        ZipfDistribution distribution = new ZipfDistribution(1_000, 1.0);
+        Random first = new Random(42);
+        Random second = new Random(42);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(distribution.sample(first), equalTo(distribution.sample(second)));
+        }
+    }
+
+    @Test
+    public void testIllegalParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new ZipfDistribution(0, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new ZipfDistribution(10, -0.5));
+    }
+
+    private long[] sample(ZipfDistribution distribution, Random random, int n) {
+        long[] counts = new long[n];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            long element = distribution.sample(random);
+            assertThat(element, allOf(greaterThanOrEqualTo(1L), lessThanOrEqualTo((long) n)));
+            counts[(int) element - 1]++;
+        }
+        return counts;
+    }
+}
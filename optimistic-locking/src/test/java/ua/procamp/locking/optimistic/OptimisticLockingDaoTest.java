@@ -0,0 +1,268 @@
+package ua.procamp.locking.optimistic;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.procamp.locking.Program;
+import ua.procamp.locking.ProgramTable;
+import ua.procamp.locking.exception.OptimisticLockingException;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ua.procamp.locking.ProgramQueries.DELETE_ALL_PROGRAMS_QUERY;
+
+public class OptimisticLockingDaoTest {
+    private static final String DATABASE_NAME = "optimistic_locking_test";
+
+    private DataSource dataSource;
+    private OptimisticLockingDao concurrentDao;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        dataSource = ProgramTable.createH2DataSource(DATABASE_NAME);
+        ProgramTable.insertPrograms(dataSource, 3, 0);
+        concurrentDao = new OptimisticLockingDao(dataSource);
+    }
+
+    @Test
+    public void testUpdateProgramIncrementsVersion() throws SQLException {
+        OptimisticLockingDao dao = new OptimisticLockingDao(dataSource);
+        Program program = dao.findProgramById(1L).orElseThrow();
+        Program staleProgram = dao.findProgramById(1L).orElseThrow();
+
+        program.name = "first";
+        dao.updateProgram(program);
+        program.name = "second";
+        dao.updateProgram(program);
+
+        assertThat(program.version, equalTo(2L));
+        assertThat(ProgramTable.findProgram(dataSource, 1L), equalTo(program));
+        assertThrows(OptimisticLockingException.class, () -> dao.updateProgram(staleProgram));
+        ConflictMetrics metrics = dao.getConflictMetrics();
+        assertThat(metrics.getAttemptCount(), equalTo(3L));
+        assertThat(metrics.getSuccessCount(), equalTo(2L));
+        assertThat(metrics.getConflictCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testUpdateWithRetryRetriesConflict() throws SQLException {
+        OptimisticLockingDao dao = new OptimisticLockingDao(dataSource, RetryConfig.builder().initialBackoff(1).build());
+        AtomicInteger callCount = new AtomicInteger();
+
+        Program storedProgram = dao.updateWithRetry(1L, program -> {
+            if (callCount.incrementAndGet() == 1) {
+                updateConcurrently(program.id, "concurrent");
+            }
+            program.name = "retried";
+            return program;
+        });
+
+        assertThat(callCount.get(), equalTo(2));
+        assertThat(storedProgram.version, equalTo(2L));
+        assertThat(ProgramTable.findProgram(dataSource, 1L), equalTo(storedProgram));
+        ConflictMetrics metrics = dao.getConflictMetrics();
+        assertThat(metrics.getAttemptCount(), equalTo(2L));
+        assertThat(metrics.getConflictCount(), equalTo(1L));
+        assertThat(metrics.getRetryCount(), equalTo(1L));
+        assertThat(metrics.getExhaustedCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testUpdateWithRetryIsExhausted() throws SQLException {
+        RetryConfig retryConfig = RetryConfig.builder()
+                .maxAttempts(3)
+                .initialBackoff(1)
+                .maxBackoff(2)
+                .build();
+        OptimisticLockingDao dao = new OptimisticLockingDao(dataSource, retryConfig);
+
+        OptimisticLockingException exception = assertThrows(OptimisticLockingException.class,
+                () -> dao.updateWithRetry(1L, program -> {
+                    updateConcurrently(program.id, "concurrent " + program.version);
+                    program.name = "lost";
+                    return program;
+                }));
+
+        assertThat(exception.getMessage(), containsString("after 3 attempts"));
+        assertThat(ProgramTable.findProgram(dataSource, 1L).name, not("lost"));
+        ConflictMetrics metrics = dao.getConflictMetrics();
+        assertThat(metrics.getAttemptCount(), equalTo(3L));
+        assertThat(metrics.getConflictCount(), equalTo(3L));
+        assertThat(metrics.getRetryCount(), equalTo(2L));
+        assertThat(metrics.getExhaustedCount(), equalTo(1L));
+        // backoff bounds are 1 ms and then 2 ms, capped by maxBackoff
+        assertThat(metrics.getTotalBackoffNanos(), lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(3)));
+    }
+
+    @Test
+    public void testUpdateWithRetryOfMissingProgram() {
+        OptimisticLockingDao dao = new OptimisticLockingDao(dataSource);
+
+        assertThrows(IllegalArgumentException.class, () -> dao.updateWithRetry(100L, program -> program));
+
+        assertThat(dao.getConflictMetrics().getAttemptCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testFindProgramFailureIsThrown() {
+        JdbcDataSource dataSourceWithoutTable = new JdbcDataSource();
+        dataSourceWithoutTable.setURL("jdbc:h2:mem:optimistic_locking_without_table");
+        dataSourceWithoutTable.setUser("sa");
+        OptimisticLockingDao dao = new OptimisticLockingDao(dataSourceWithoutTable);
+
+        OptimisticLockingException exception = assertThrows(OptimisticLockingException.class,
+                () -> dao.findProgramById(1L));
+
+        assertThat(exception.getCause(), instanceOf(SQLException.class));
+        assertThrows(OptimisticLockingException.class,
+                () -> dao.findSuchProgram(Program.builder().id(1L).version(0L).build()));
+    }
+
+    @Test
+    public void testUpdateWithRetryIsInterruptedDuringBackoff() throws SQLException {
+        OptimisticLockingDao dao = new OptimisticLockingDao(dataSource,
+                RetryConfig.builder().initialBackoff(TimeUnit.MINUTES.toMillis(1)).build());
+
+        OptimisticLockingException exception;
+        boolean interrupted;
+        try {
+            exception = assertThrows(OptimisticLockingException.class,
+                    () -> dao.updateWithRetry(1L, program -> {
+                        updateConcurrently(program.id, "concurrent");
+                        Thread.currentThread().interrupt();
+                        return program;
+                    }));
+        } finally {
+            interrupted = Thread.interrupted();
+        }
+
+        assertThat(interrupted, is(true));
+        assertThat(exception.getCause(), instanceOf(InterruptedException.class));
+        assertThat(dao.getConflictMetrics().getRetryCount(), equalTo(1L));
+        assertThat(dao.getConflictMetrics().getExhaustedCount(), equalTo(0L));
+        assertThat(ProgramTable.findProgram(dataSource, 1L).name, equalTo("concurrent"));
+    }
+
+    @Test
+    public void testUpdateProgramsAcrossChunks() throws SQLException {
+        verifyUpdatePrograms(dataSource);
+    }
+
+    @Test
+    public void testUpdateProgramsWithoutUpdateCounts() throws SQLException {
+        verifyUpdatePrograms(new NoUpdateCountDataSource());
+    }
+
+    /**
+     * Updates 2 500 stored programs, every 7th of them stale, and 10 missing ones, which takes three chunks
+     */
+    private void verifyUpdatePrograms(DataSource updateDataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(DELETE_ALL_PROGRAMS_QUERY);
+        }
+        ProgramTable.insertPrograms(dataSource, 2_500, 0);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("update programs set version = 1 where mod(id, 7) = 0");
+        }
+        List<Program> programs = new ArrayList<>();
+        List<Long> expectedConflictedIds = new ArrayList<>();
+        for (long id = 1; id <= 2_510; id++) {
+            long programId = id <= 2_500 ? id : id + 1_000;
+            programs.add(Program.builder().id(programId).name("batch " + programId).version(0L).build());
+            if (programId % 7 == 0 || programId > 2_500) {
+                expectedConflictedIds.add(programId);
+            }
+        }
+        OptimisticLockingDao dao = new OptimisticLockingDao(updateDataSource);
+
+        BatchUpdateResult result = dao.updatePrograms(programs);
+
+        assertThat(result.getConflictedIds(), equalTo(expectedConflictedIds));
+        assertThat(result.getUpdatedCount(), equalTo(programs.size() - expectedConflictedIds.size()));
+        for (Program program : result.getUpdatedPrograms()) {
+            assertThat(program.version, equalTo(1L));
+            assertThat(ProgramTable.findProgram(dataSource, program.id), equalTo(program));
+        }
+        Program staleProgram = ProgramTable.findProgram(dataSource, 7L);
+        assertThat(staleProgram.name, equalTo("program 7"));
+        assertThat(staleProgram.version, equalTo(1L));
+        ConflictMetrics metrics = dao.getConflictMetrics();
+        assertThat(metrics.getAttemptCount(), equalTo((long) programs.size()));
+        assertThat(metrics.getSuccessCount(), equalTo((long) result.getUpdatedCount()));
+        assertThat(metrics.getConflictCount(), equalTo((long) expectedConflictedIds.size()));
+    }
+
+    @Test
+    public void testRetryConfigDefaults() {
+        RetryConfig retryConfig = RetryConfig.defaultConfig();
+
+        assertThat(retryConfig.getMaxAttempts(), equalTo(5));
+        assertThat(retryConfig.getInitialBackoff(), equalTo(5L));
+        assertThat(retryConfig.getMaxBackoff(), equalTo(200L));
+        assertThat(retryConfig.getBackoffMultiplier(), equalTo(2.0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OptimisticLockingDao(dataSource, RetryConfig.builder().maxAttempts(0).build()));
+    }
+
+    /**
+     * Reports every batched update as {@link Statement#SUCCESS_NO_INFO}, as some drivers do
+     */
+    private static class NoUpdateCountDataSource extends JdbcDataSource {
+        NoUpdateCountDataSource() {
+            setURL(String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false", DATABASE_NAME));
+            setUser("sa");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (!method.getName().equals("prepareStatement")) {
+                            return result;
+                        }
+                        PreparedStatement statement = (PreparedStatement) result;
+                        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                                (statementProxy, statementMethod, statementArgs) -> {
+                                    Object statementResult = invoke(statement, statementMethod, statementArgs);
+                                    if (statementMethod.getName().equals("executeBatch")) {
+                                        Arrays.fill((int[]) statementResult, Statement.SUCCESS_NO_INFO);
+                                    }
+                                    return statementResult;
+                                });
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private void updateConcurrently(Long programId, String name) {
+        Program program = concurrentDao.findProgramById(programId).orElseThrow();
+        program.name = name;
+        concurrentDao.updateProgram(program);
+    }
+}
@@ -0,0 +1,249 @@
+package ua.procamp.locking.pessimistic;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.procamp.locking.Program;
+import ua.procamp.locking.ProgramTable;
+import ua.procamp.locking.exception.PessimisticLockingException;
+import ua.procamp.util.JdbcUtil;
+import ua.procamp.util.pool.PoolConfig;
+import ua.procamp.util.pool.PooledDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ua.procamp.locking.ProgramQueries.*;
+
+public class PessimisticLockingDaoTest {
+    private static final String DATABASE_NAME = "pessimistic_locking_test";
+
+    private DataSource dataSource;
+    private Connection lockHolder;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        dataSource = ProgramTable.createH2DataSource(DATABASE_NAME);
+        ProgramTable.insertPrograms(dataSource, 3, 0);
+    }
+
+    @AfterEach
+    public void releaseLock() throws SQLException {
+        if (lockHolder != null) {
+            lockHolder.rollback();
+            lockHolder.close();
+            lockHolder = null;
+        }
+    }
+
+    /**
+     * Locks a program row by another connection until the end of the test
+     */
+    private void lockProgramByAnotherConnection(long programId) throws SQLException {
+        lockHolder = dataSource.getConnection();
+        lockHolder.setAutoCommit(false);
+        try (Statement statement = lockHolder.createStatement()) {
+            statement.executeUpdate("update programs set name = 'holder' where id = " + programId);
+        }
+    }
+
+    @Test
+    public void testUpdateWithLock() throws SQLException {
+        PessimisticLockingDao dao = new PessimisticLockingDao(dataSource);
+
+        Optional<Program> storedProgram = dao.updateWithLock(1L, program -> {
+            program.name = "locked";
+            return program;
+        });
+
+        assertThat(storedProgram.isPresent(), is(true));
+        assertThat(storedProgram.get().version, equalTo(1L));
+        assertThat(ProgramTable.findProgram(dataSource, 1L), equalTo(storedProgram.get()));
+        assertThat(dao.getLockWaitHistogram().getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testNowaitFailsOnLockedProgram() throws SQLException {
+        PessimisticLockingDao dao = createDao(LockMode.NOWAIT);
+        lockProgramByAnotherConnection(1L);
+
+        assertThrows(PessimisticLockingException.class, () -> dao.updateWithLock(1L, program -> program));
+
+        assertThat(dao.getLockFailureCount(), equalTo(1L));
+        assertThat(dao.getSkippedCount(), equalTo(0L));
+        assertThat(dao.updateWithLock(2L, program -> program).isPresent(), is(true));
+    }
+
+    @Test
+    public void testTimeoutFailsOnLockedProgram() throws SQLException {
+        PessimisticLockingDao dao = new PessimisticLockingDao(dataSource,
+                LockConfig.builder().lockMode(LockMode.TIMEOUT).lockTimeout(100).build());
+        lockProgramByAnotherConnection(1L);
+
+        assertThrows(PessimisticLockingException.class, () -> dao.updateWithLock(1L, program -> program));
+
+        assertThat(dao.getLockFailureCount(), equalTo(1L));
+        assertThat(dao.getLockWaitHistogram().getMaxWaitMillis(), greaterThanOrEqualTo(100.0));
+    }
+
+    @Test
+    public void testSkipLockedSkipsLockedProgram() throws SQLException {
+        PessimisticLockingDao dao = createDao(LockMode.SKIP_LOCKED);
+        lockProgramByAnotherConnection(1L);
+
+        Optional<Program> skippedProgram = dao.updateWithLock(1L, program -> program);
+        Optional<Program> missingProgram = dao.updateWithLock(100L, program -> program);
+
+        assertThat(skippedProgram.isPresent(), is(false));
+        assertThat(missingProgram.isPresent(), is(false));
+        assertThat(dao.getSkippedCount(), equalTo(1L));
+        assertThat(dao.getLockFailureCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testLockTimeoutIsRestoredOnPooledConnection() throws SQLException {
+        long lockTimeout;
+        long createdConnections;
+        try (PooledDataSource pooledDataSource = JdbcUtil.createPooledDataSource(dataSource,
+                PoolConfig.builder().maxPoolSize(1).build())) {
+            try (Connection connection = pooledDataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute(String.format(SET_LOCK_TIMEOUT_H2_QUERY, 1234));
+            }
+            PessimisticLockingDao dao = new PessimisticLockingDao(pooledDataSource, LockConfig.builder().lockMode(LockMode.NOWAIT).build());
+            lockProgramByAnotherConnection(1L);
+
+            assertThrows(PessimisticLockingException.class, () -> dao.updateWithLock(1L, program -> program));
+            dao.updateWithLock(2L, program -> program);
+            lockTimeout = queryLockTimeout(pooledDataSource);
+            createdConnections = pooledDataSource.getMetrics().getCreatedConnections();
+        }
+
+        assertThat(lockTimeout, equalTo(1234L));
+        assertThat(createdConnections, equalTo(1L));
+    }
+
+    @Test
+    public void testBlockingModeDoesNotTouchLockTimeout() {
+        StatementCountingDataSource countingDataSource = new StatementCountingDataSource();
+        PessimisticLockingDao dao = new PessimisticLockingDao(countingDataSource);
+
+        dao.updateWithLock(1L, program -> program);
+
+        assertThat(countingDataSource.createdStatementCount, equalTo(0));
+    }
+
+    @Test
+    public void testRestoreFailureIsSuppressed() throws SQLException {
+        PessimisticLockingDao dao = new PessimisticLockingDao(new FailingRestoreDataSource(),
+                LockConfig.builder().lockMode(LockMode.NOWAIT).build());
+        lockProgramByAnotherConnection(1L);
+
+        PessimisticLockingException exception = assertThrows(PessimisticLockingException.class,
+                () -> dao.updateWithLock(1L, program -> program));
+
+        assertThat(exception.getMessage(), containsString("is locked by another transaction"));
+        assertThat(exception.getSuppressed().length, equalTo(1));
+        assertThat(exception.getSuppressed()[0].getMessage(), equalTo("Restore failed"));
+    }
+
+    @Test
+    public void testFindProgramByIdFailure() throws SQLException {
+        PessimisticLockingDao dao = new PessimisticLockingDao(dataSource);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("drop table programs");
+        }
+
+        assertThrows(PessimisticLockingException.class, () -> dao.findProgramById(1L));
+    }
+
+    private PessimisticLockingDao createDao(LockMode lockMode) {
+        return new PessimisticLockingDao(dataSource, LockConfig.builder().lockMode(lockMode).build());
+    }
+
+    private long queryLockTimeout(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_LOCK_TIMEOUT_H2_QUERY)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Counts plain statements, which are used only to read and change the lock timeout
+     */
+    private static class StatementCountingDataSource extends JdbcDataSource {
+        private int createdStatementCount;
+
+        StatementCountingDataSource() {
+            setURL(String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false", DATABASE_NAME));
+            setUser("sa");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("createStatement")) {
+                            createdStatementCount++;
+                        }
+                        return FailingRestoreDataSource.invoke(connection, method, args);
+                    });
+        }
+    }
+
+    /**
+     * Fails every {@code SET LOCK_TIMEOUT} statement but the first one of a connection, which is the restore
+     */
+    private static class FailingRestoreDataSource extends JdbcDataSource {
+        FailingRestoreDataSource() {
+            setURL(String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false", DATABASE_NAME));
+            setUser("sa");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            int[] setLockTimeoutCount = {0};
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (!method.getName().equals("createStatement")) {
+                            return result;
+                        }
+                        Statement statement = (Statement) result;
+                        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                                (statementProxy, statementMethod, statementArgs) -> {
+                                    if (statementMethod.getName().equals("execute")
+                                            && ((String) statementArgs[0]).startsWith("SET LOCK_TIMEOUT")
+                                            && ++setLockTimeoutCount[0] > 1) {
+                                        throw new SQLException("Restore failed");
+                                    }
+                                    return invoke(statement, statementMethod, statementArgs);
+                                });
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
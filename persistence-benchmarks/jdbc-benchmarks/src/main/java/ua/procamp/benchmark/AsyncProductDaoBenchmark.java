@@ -0,0 +1,100 @@
+package ua.procamp.benchmark;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.AsyncProductDao;
+import ua.procamp.dao.ProductDaoImpl;
+import ua.procamp.model.Product;
+import ua.procamp.util.JdbcUtil;
+import ua.procamp.util.concurrent.DaoExecutor;
+import ua.procamp.util.pool.PoolConfig;
+import ua.procamp.util.pool.PooledDataSource;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes {@link AsyncProductDao} to complete {@code concurrentRequests} concurrent
+ * {@code findOne} calls on an in-memory H2 database behind a pool of {@link #POOL_SIZE} connections, with different
+ * {@link DaoExecutor}s:
+ * <ul>
+ * <li>{@code virtual} - a virtual thread per call, bounded by a semaphore sized to the pool, needs Java 21+</li>
+ * <li>{@code platform} - a fixed pool of platform threads sized to the pool</li>
+ * <li>{@code platform200} - a fixed pool of 200 platform threads, that wait for connections in the pool</li>
+ * </ul>
+ * Benchmarks run in the JVM Maven runs with, so run Maven on Java 21+ to measure virtual threads. On older Java the
+ * {@code virtual} runs fail before any data is loaded, exclude them with
+ * <pre>
+ * mvn -pl persistence-benchmarks/jdbc-benchmarks exec:exec -Djmh.args="AsyncProductDaoBenchmark -p executorType=platform,platform200"
+ * </pre>
+ * Run it with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AsyncProductDaoBenchmark {
+    private static final int POOL_SIZE = 10;
+    private static final int LARGE_THREAD_POOL_SIZE = 200;
+
+    @Param("10000")
+    private int rowCount;
+    @Param({"1000", "10000"})
+    private int concurrentRequests;
+    @Param({"virtual", "platform", "platform200"})
+    private String executorType;
+
+    private PooledDataSource dataSource;
+    private DaoExecutor executor;
+    private AsyncProductDao asyncProductDao;
+
+    @Setup
+    public void setUp() throws SQLException {
+        if (executorType.equals("virtual") && !DaoExecutor.isVirtualThreadSupported()) {
+            throw new UnsupportedOperationException(String.format("Virtual threads are not supported by Java %s, " +
+                    "run with -p executorType=platform,platform200", System.getProperty("java.version")));
+        }
+        PoolConfig poolConfig = PoolConfig.builder().maxPoolSize(POOL_SIZE).build();
+        dataSource = JdbcUtil.createPooledDataSource(ProductsTable.createDatabase("async_product_dao_benchmark"), poolConfig);
+        ProductsTable.populate(dataSource, rowCount);
+        executor = createExecutor();
+        asyncProductDao = new AsyncProductDao(new ProductDaoImpl(dataSource), executor);
+    }
+
+    private DaoExecutor createExecutor() {
+        switch (executorType) {
+            case "virtual":
+                return DaoExecutor.virtualThreadPerTask(POOL_SIZE);
+            case "platform":
+                return DaoExecutor.fixedThreadPool(POOL_SIZE);
+            case "platform200":
+                return DaoExecutor.fixedThreadPool(LARGE_THREAD_POOL_SIZE);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown executor type %s", executorType));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        executor.close();
+        ProductsTable.dropDatabase(dataSource);
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Product[] findOneConcurrently() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Product>[] futures = new CompletableFuture[concurrentRequests];
+        for (int i = 0; i < concurrentRequests; i++) {
+            futures[i] = asyncProductDao.findOne(RandomUtils.nextLong(1, rowCount + 1));
+        }
+        Product[] products = new Product[concurrentRequests];
+        for (int i = 0; i < concurrentRequests; i++) {
+            products[i] = futures[i].join();
+        }
+        return products;
+    }
+}
@@ -0,0 +1,130 @@
+package ua.procamp.benchmark;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.locking.Program;
+import ua.procamp.locking.optimistic.BatchUpdateResult;
+import ua.procamp.locking.optimistic.OptimisticLockingDao;
+import ua.procamp.locking.pessimistic.PessimisticLockingDao;
+import ua.procamp.util.JdbcUtil;
+import ua.procamp.util.pool.PooledDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Measures throughput of reading a program and updating it with {@link OptimisticLockingDao} and
+ * {@link PessimisticLockingDao} on an in-memory H2 database, and of {@link OptimisticLockingDao#updateWithRetry},
+ * that reads and updates on one connection. Programs are picked at random, so updates rarely conflict. Batch
+ * benchmarks update {@code batchSize} programs at a time with {@link OptimisticLockingDao#updatePrograms} or one by
+ * one. Run it with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LockingDaoBenchmark {
+    @Param("1000")
+    private int programCount;
+    @Param("100")
+    private int batchSize;
+
+    private PooledDataSource dataSource;
+    private OptimisticLockingDao optimisticLockingDao;
+    private PessimisticLockingDao pessimisticLockingDao;
+    // programs with their current versions, the same as in the database since only one thread updates them
+    private List<Program> programs;
+    private int batchOffset;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = JdbcUtil.createPooledDataSource(
+                "jdbc:h2:mem:locking_benchmark;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false", "bench_user", "bench_pass");
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE programs (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+                        "version BIGINT NOT NULL)");
+            }
+            try (PreparedStatement insertStatement = connection.prepareStatement(
+                    "INSERT INTO programs (id, name, version) VALUES (?, ?, 0)")) {
+                for (long id = 1; id <= programCount; id++) {
+                    insertStatement.setLong(1, id);
+                    insertStatement.setString(2, "program " + id);
+                    insertStatement.addBatch();
+                }
+                insertStatement.executeBatch();
+            }
+        }
+        optimisticLockingDao = new OptimisticLockingDao(dataSource);
+        programs = LongStream.rangeClosed(1, programCount)
+                .mapToObj(id -> Program.builder().id(id).name("program " + id).version(0L).build())
+                .collect(toList());
+        pessimisticLockingDao = new PessimisticLockingDao(dataSource);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        dataSource.close();
+    }
+
+    @Benchmark
+    public int optimisticUpdateProgram() {
+        Program program = optimisticLockingDao.findProgramById(randomProgramId()).orElseThrow();
+        program.name = "optimistic";
+        return optimisticLockingDao.updateProgram(program);
+    }
+
+    @Benchmark
+    public Program optimisticUpdateWithRetry() {
+        return optimisticLockingDao.updateWithRetry(randomProgramId(), program -> {
+            program.name = "optimistic";
+            return program;
+        });
+    }
+
+    @Benchmark
+    public BatchUpdateResult optimisticUpdatePrograms() {
+        return optimisticLockingDao.updatePrograms(nextBatch());
+    }
+
+    @Benchmark
+    public int optimisticUpdateProgramsOneByOne() {
+        int updatedCount = 0;
+        for (Program program : nextBatch()) {
+            updatedCount += optimisticLockingDao.updateProgram(program);
+        }
+        return updatedCount;
+    }
+
+    @Benchmark
+    public int pessimisticUpdateProgram() {
+        Program program = pessimisticLockingDao.findProgramById(randomProgramId()).orElseThrow();
+        program.name = "pessimistic";
+        return pessimisticLockingDao.updateProgram(program);
+    }
+
+    private List<Program> nextBatch() {
+        if (batchOffset + batchSize > programs.size()) {
+            batchOffset = 0;
+        }
+        List<Program> batch = programs.subList(batchOffset, batchOffset + batchSize);
+        batchOffset += batchSize;
+        return batch;
+    }
+
+    private long randomProgramId() {
+        return RandomUtils.nextLong(1, programCount + 1);
+    }
+}
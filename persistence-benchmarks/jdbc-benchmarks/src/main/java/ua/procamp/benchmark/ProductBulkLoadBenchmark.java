@@ -0,0 +1,71 @@
+package ua.procamp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.ProductBulkLoader;
+import ua.procamp.dao.ProductDao;
+import ua.procamp.dao.ProductDaoImpl;
+import ua.procamp.model.Product;
+import ua.procamp.util.bulk.BulkLoadResult;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ProductBulkLoader} with {@link ProductDao#saveAll(java.util.Collection)} and with saving products
+ * one by one. On H2 the loader falls back to batched inserts, so it shows the cost of the loader itself rather than
+ * the gain of PostgreSQL {@code COPY}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProductBulkLoadBenchmark {
+    @Param("10000")
+    private int rowCount;
+
+    private DataSource dataSource;
+    private ProductDao productDao;
+    private ProductBulkLoader bulkLoader;
+    private List<Product> products;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = ProductsTable.createDatabase("bulk_load_benchmark");
+        productDao = new ProductDaoImpl(dataSource);
+        bulkLoader = new ProductBulkLoader(dataSource);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareProducts() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE products");
+        }
+        products = ProductsTable.generateProducts(rowCount);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        ProductsTable.dropDatabase(dataSource);
+    }
+
+    @Benchmark
+    public BulkLoadResult bulkLoad() {
+        return bulkLoader.load(products);
+    }
+
+    @Benchmark
+    public void saveAll() {
+        productDao.saveAll(products);
+    }
+
+    @Benchmark
+    public void saveOneByOne() {
+        products.forEach(productDao::save);
+    }
+}
@@ -0,0 +1,62 @@
+package ua.procamp.benchmark;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.ProductDao;
+import ua.procamp.dao.ProductDaoImpl;
+import ua.procamp.model.Product;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of the basic {@link ProductDaoImpl} operations on an in-memory H2 database. Run it with
+ * {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProductDaoBenchmark {
+    @Param("10000")
+    private int rowCount;
+
+    private DataSource dataSource;
+    private ProductDao productDao;
+    private long maxId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = ProductsTable.createDatabase("product_dao_benchmark");
+        ProductsTable.populate(dataSource, rowCount);
+        productDao = new ProductDaoImpl(dataSource);
+        maxId = productDao.findAll().stream().mapToLong(Product::getId).max().orElseThrow();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        ProductsTable.dropDatabase(dataSource);
+    }
+
+    @Benchmark
+    public Product save() {
+        Product product = ProductsTable.generateProduct();
+        productDao.save(product);
+        return product;
+    }
+
+    @Benchmark
+    public Product findOne() {
+        return productDao.findOne(RandomUtils.nextLong(1, maxId + 1));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MINUTES)
+    public List<Product> findAll() {
+        return productDao.findAll();
+    }
+}
@@ -0,0 +1,78 @@
+package ua.procamp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ua.procamp.dao.ProductRowMapper;
+import ua.procamp.model.Product;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ProductRowMapper} with the mapper that looks columns up by name and converts dates through
+ * {@link java.sql.Date} and {@link java.sql.Timestamp}, which was used by {@link ua.procamp.dao.ProductDaoImpl} before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProductRowMapperBenchmark {
+    private static final String SELECT_ALL_QUERY =
+            "SELECT id, name, producer, price, expiration_date, creation_time FROM products";
+
+    @Param("1000000")
+    private int rowCount;
+
+    private DataSource dataSource;
+    private Connection connection;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = ProductsTable.createDatabase("row_mapper_benchmark");
+        ProductsTable.populate(dataSource, rowCount);
+        connection = dataSource.getConnection();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        ProductsTable.dropDatabase(dataSource);
+    }
+
+    @Benchmark
+    public void mapByColumnName(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_ALL_QUERY);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(mapByColumnName(resultSet));
+            }
+        }
+    }
+
+    private Product mapByColumnName(ResultSet resultSet) throws SQLException {
+        return new Product(
+                resultSet.getLong("id"),
+                resultSet.getString("name"),
+                resultSet.getString("producer"),
+                resultSet.getBigDecimal("price"),
+                resultSet.getDate("expiration_date").toLocalDate(),
+                resultSet.getTimestamp("creation_time").toLocalDateTime());
+    }
+
+    @Benchmark
+    public void mapByColumnIndex(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_ALL_QUERY);
+             ResultSet resultSet = statement.executeQuery()) {
+            ProductRowMapper rowMapper = ProductRowMapper.forResultSet(resultSet);
+            while (resultSet.next()) {
+                blackhole.consume(rowMapper.mapRow(resultSet));
+            }
+        }
+    }
+}
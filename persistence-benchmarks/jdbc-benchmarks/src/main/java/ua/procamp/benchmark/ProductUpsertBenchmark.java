@@ -0,0 +1,60 @@
+package ua.procamp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.ProductDao;
+import ua.procamp.dao.ProductDaoImpl;
+import ua.procamp.dao.UpsertResult;
+import ua.procamp.model.Product;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ProductDao#upsertAll(java.util.Collection)} with updating the same stored products one by one using
+ * {@link ProductDao#update(Product)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProductUpsertBenchmark {
+    @Param("10000")
+    private int rowCount;
+
+    private DataSource dataSource;
+    private ProductDao productDao;
+    private List<Product> products;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = ProductsTable.createDatabase("upsert_benchmark");
+        ProductsTable.populate(dataSource, rowCount);
+        productDao = new ProductDaoImpl(dataSource);
+        products = productDao.findAll();
+    }
+
+    @Setup(Level.Invocation)
+    public void changePrices() {
+        products.forEach(product -> product.setPrice(product.getPrice().add(BigDecimal.ONE)));
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        ProductsTable.dropDatabase(dataSource);
+    }
+
+    @Benchmark
+    public UpsertResult upsertAll() {
+        return productDao.upsertAll(products);
+    }
+
+    @Benchmark
+    public void updateOneByOne() {
+        products.forEach(productDao::update);
+    }
+}
@@ -0,0 +1,77 @@
+package ua.procamp.benchmark;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import ua.procamp.dao.ProductDaoImpl;
+import ua.procamp.model.Product;
+import ua.procamp.util.JdbcUtil;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * {@link ProductsTable} prepares in-memory H2 databases with the products table used by benchmarks.
+ */
+public class ProductsTable {
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    /**
+     * Creates a new in-memory H2 database that keeps large result sets in memory, and creates the products table.
+     *
+     * @param databaseName unique database name
+     * @return data source of created database
+     */
+    public static DataSource createDatabase(String databaseName) throws SQLException {
+        String url = String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false;MAX_MEMORY_ROWS=2000000",
+                databaseName);
+        DataSource dataSource = JdbcUtil.createInMemoryH2DataSource(url, "bench_user", "bench_pass");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE products (\n" +
+                    "  id            SERIAL NOT NULL,\n" +
+                    "  name     VARCHAR(255) NOT NULL,\n" +
+                    "  producer     VARCHAR(255) NOT NULL,\n" +
+                    "  price       DECIMAL(19, 4),\n" +
+                    "  expiration_date      TIMESTAMP NOT NULL,\n" +
+                    "  creation_time TIMESTAMP NOT NULL DEFAULT now(),\n" +
+                    "\n" +
+                    "  CONSTRAINT products_pk PRIMARY KEY (id)\n" +
+                    ");");
+        }
+        return dataSource;
+    }
+
+    /**
+     * Drops the database created by {@link ProductsTable#createDatabase(String)}.
+     */
+    public static void dropDatabase(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    public static void populate(DataSource dataSource, int rowCount) {
+        new ProductDaoImpl(dataSource, INSERT_BATCH_SIZE).saveAll(generateProducts(rowCount));
+    }
+
+    public static List<Product> generateProducts(int size) {
+        return Stream.generate(ProductsTable::generateProduct).limit(size).collect(toList());
+    }
+
+    public static Product generateProduct() {
+        return Product.builder()
+                .name(RandomStringUtils.randomAlphabetic(10))
+                .producer(RandomStringUtils.randomAlphabetic(20))
+                .price(BigDecimal.valueOf(RandomUtils.nextInt(10, 100)))
+                .expirationDate(LocalDate.ofYearDay(LocalDate.now().getYear() + RandomUtils.nextInt(1, 5),
+                        RandomUtils.nextInt(1, 365)))
+                .build();
+    }
+}
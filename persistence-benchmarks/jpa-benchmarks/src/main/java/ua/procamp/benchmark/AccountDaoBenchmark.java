@@ -0,0 +1,111 @@
+package ua.procamp.benchmark;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.cache.InMemoryAccountCache;
+import ua.procamp.dao.AccountDao;
+import ua.procamp.dao.AccountDaoImpl;
+import ua.procamp.model.Account;
+import ua.procamp.util.EntityManagerUtil;
+import ua.procamp.util.TestDataGenerator;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Measures throughput of {@link AccountDaoImpl} operations on an in-memory H2 database, with and without
+ * {@link InMemoryAccountCache} that is big enough to keep all accounts. Run it with {@code -prof gc} to see
+ * the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountDaoBenchmark {
+    private static final int ID_BATCH_SIZE = 50;
+
+    @Param("1000")
+    private int accountCount;
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private EntityManagerFactory emf;
+    private AccountDao accountDao;
+    private List<Account> accounts;
+    private Account template;
+    private final AtomicLong emailSequence = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        emf = EntityManagerFactories.create("SingleAccountEntityH2");
+        accountDao = cached
+                ? new AccountDaoImpl(emf, new InMemoryAccountCache(accountCount, Duration.ofMinutes(10)))
+                : new AccountDaoImpl(emf);
+        accounts = TestDataGenerator.generateAccountList(accountCount).stream()
+                .map(this::withUniqueEmail)
+                .collect(toList());
+        new EntityManagerUtil(emf).performWithinTx(entityManager -> accounts.forEach(entityManager::persist));
+        template = TestDataGenerator.generateAccount();
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @Benchmark
+    public Account save() {
+        Account account = new Account();
+        account.setFirstName(template.getFirstName());
+        account.setLastName(template.getLastName());
+        account.setBirthday(template.getBirthday());
+        account.setGender(template.getGender());
+        account.setBalance(template.getBalance());
+        account.setCreationTime(LocalDateTime.now());
+        withUniqueEmail(account);
+        accountDao.save(account);
+        return account;
+    }
+
+    @Benchmark
+    public Account findById() {
+        return accountDao.findById(randomAccount().getId());
+    }
+
+    @Benchmark
+    public List<Account> findAllById() {
+        return accountDao.findAllById(randomAccountIds());
+    }
+
+    @Benchmark
+    public List<Account> findByIdOneByOne() {
+        return randomAccountIds().stream().map(accountDao::findById).collect(toList());
+    }
+
+    @Benchmark
+    public Account findByEmail() {
+        return accountDao.findByEmail(randomAccount().getEmail());
+    }
+
+    private List<Long> randomAccountIds() {
+        return Stream.generate(this::randomAccount).limit(ID_BATCH_SIZE).map(Account::getId).collect(toList());
+    }
+
+    private Account randomAccount() {
+        return accounts.get(RandomUtils.nextInt(0, accounts.size()));
+    }
+
+    private Account withUniqueEmail(Account account) {
+        account.setEmail(emailSequence.incrementAndGet() + "." + account.getLastName() + "@benchmark.com");
+        return account;
+    }
+}
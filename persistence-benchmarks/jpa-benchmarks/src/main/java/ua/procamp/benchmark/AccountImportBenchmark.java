@@ -0,0 +1,140 @@
+package ua.procamp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.AccountDao;
+import ua.procamp.dao.AccountDaoImpl;
+import ua.procamp.model.Account;
+import ua.procamp.util.TestDataGenerator;
+import ua.procamp.util.UnitOfWork;
+
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares {@link AccountDao#importAll}, that uses a stateless session, with saving the same accounts by
+ * {@link AccountDao#save} inside one unit of work, where every account stays in the persistence context until commit.
+ * With {@code bulk} enabled both run in the bulk persistence unit, whose sequence ids let the stateless session batch
+ * inserts, otherwise every account is inserted by its own statement to read its identity id.
+ * <p>
+ * Accounts are generated lazily while they are imported. With {@code sampleHeap} enabled, every
+ * {@link #HEAP_SAMPLE_INTERVAL} accounts the generator forces a GC and measures how much more heap is reachable than
+ * at the start of the operation. JMH sums the counters over iterations, so {@code retainedHeapMb / heapSamples} is the
+ * average retained heap. The in-memory H2 database lives in the same heap, so its new rows are counted too, equally
+ * for both benchmarks. Forced GCs dominate the measured time, so compare times with {@code sampleHeap} disabled. Run
+ * with {@code -prof gc} (the default) to see the allocation rate as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountImportBenchmark {
+    private static final int HEAP_SAMPLE_INTERVAL = 10000;
+
+    @Param("20000")
+    private int accountCount;
+    @Param({"false", "true"})
+    private boolean sampleHeap;
+    @Param({"false", "true"})
+    private boolean bulk;
+
+    private EntityManagerFactory emf;
+    private AccountDao accountDao;
+    private Account template;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        emf = EntityManagerFactories.create(bulk ? "SingleAccountEntityH2Bulk" : "SingleAccountEntityH2");
+        accountDao = new AccountDaoImpl(emf);
+        template = TestDataGenerator.generateAccount();
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapCounters {
+        private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+        public long heapSamples;
+        public double retainedHeapMb;
+
+        private long baselineBytes;
+
+        void start() {
+            baselineBytes = usedHeapAfterGc();
+        }
+
+        void sample() {
+            heapSamples++;
+            retainedHeapMb += (usedHeapAfterGc() - baselineBytes) / (1024.0 * 1024.0);
+        }
+
+        private static long usedHeapAfterGc() {
+            System.gc();
+            return MEMORY.getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    @Benchmark
+    public long importAll(HeapCounters counters) {
+        return accountDao.importAll(new AccountGenerator(counters));
+    }
+
+    @Benchmark
+    public long saveInOneUnitOfWork(HeapCounters counters) {
+        AccountGenerator accounts = new AccountGenerator(counters);
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(emf)) {
+            accounts.forEachRemaining(accountDao::save);
+            unitOfWork.commit();
+        }
+        return accounts.generatedCount;
+    }
+
+    private class AccountGenerator implements Iterator<Account> {
+        private final HeapCounters counters;
+        private long generatedCount;
+
+        AccountGenerator(HeapCounters counters) {
+            this.counters = counters;
+            if (sampleHeap) {
+                counters.start();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return generatedCount < accountCount;
+        }
+
+        @Override
+        public Account next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (++generatedCount % HEAP_SAMPLE_INTERVAL == 0 && sampleHeap) {
+                counters.sample();
+            }
+            Account account = new Account();
+            account.setFirstName(template.getFirstName());
+            account.setLastName(template.getLastName());
+            account.setEmail(sequence.incrementAndGet() + "@import.com");
+            account.setBirthday(template.getBirthday());
+            account.setGender(template.getGender());
+            account.setBalance(template.getBalance());
+            account.setCreationTime(LocalDateTime.now());
+            return account;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ua.procamp.benchmark;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.AccountDao;
+import ua.procamp.dao.AccountDaoImpl;
+import ua.procamp.model.Account;
+import ua.procamp.util.EntityManagerUtil;
+import ua.procamp.util.TestDataGenerator;
+import ua.procamp.util.UnitOfWork;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Simulates a request that reads two accounts and updates one of them with {@link AccountDaoImpl}. Compares running
+ * every DAO call in its own entity manager and transaction with running the whole request in one
+ * {@link UnitOfWork}. Besides throughput it reports the numbers of requests, connections, transactions and flushes,
+ * taken from Hibernate statistics. JMH sums these counters over iterations, so divide them by {@code requests} to
+ * get the numbers per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountRequestBenchmark {
+    @Param("1000")
+    private int accountCount;
+
+    private EntityManagerFactory emf;
+    private Statistics statistics;
+    private AccountDao accountDao;
+    private List<Account> accounts;
+
+    @Setup
+    public void setUp() {
+        emf = EntityManagerFactories.create("SingleAccountEntityH2", Map.of("hibernate.generate_statistics", "true"));
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        accountDao = new AccountDaoImpl(emf);
+        AtomicLong emailSequence = new AtomicLong();
+        accounts = TestDataGenerator.generateAccountList(accountCount).stream()
+                .peek(account -> account.setEmail(emailSequence.incrementAndGet() + "@benchmark.com"))
+                .collect(toList());
+        new EntityManagerUtil(emf).performWithinTx(entityManager -> accounts.forEach(entityManager::persist));
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RequestCounters {
+        public long requests;
+        public long connections;
+        public long transactions;
+        public long flushes;
+
+        private long initialConnections;
+        private long initialTransactions;
+        private long initialFlushes;
+
+        void requestStarted(Statistics statistics) {
+            initialConnections = statistics.getConnectCount();
+            initialTransactions = statistics.getTransactionCount();
+            initialFlushes = statistics.getFlushCount();
+        }
+
+        void requestCompleted(Statistics statistics) {
+            requests++;
+            connections += statistics.getConnectCount() - initialConnections;
+            transactions += statistics.getTransactionCount() - initialTransactions;
+            flushes += statistics.getFlushCount() - initialFlushes;
+        }
+    }
+
+    @Benchmark
+    public Account transactionPerCall(RequestCounters counters) {
+        counters.requestStarted(statistics);
+        Account account = handleRequest();
+        counters.requestCompleted(statistics);
+        return account;
+    }
+
+    @Benchmark
+    public Account unitOfWork(RequestCounters counters) {
+        counters.requestStarted(statistics);
+        Account account;
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(emf)) {
+            account = handleRequest();
+            unitOfWork.commit();
+        }
+        counters.requestCompleted(statistics);
+        return account;
+    }
+
+    private Account handleRequest() {
+        Account account = accountDao.findById(randomAccount().getId());
+        accountDao.findByEmail(randomAccount().getEmail());
+        account.setBalance(account.getBalance().add(BigDecimal.ONE));
+        accountDao.update(account);
+        return account;
+    }
+
+    private Account randomAccount() {
+        return accounts.get(RandomUtils.nextInt(0, accounts.size()));
+    }
+}
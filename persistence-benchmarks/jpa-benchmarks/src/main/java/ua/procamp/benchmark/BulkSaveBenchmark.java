@@ -0,0 +1,130 @@
+package ua.procamp.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.AccountDao;
+import ua.procamp.dao.AccountDaoImpl;
+import ua.procamp.dao.PhotoDao;
+import ua.procamp.dao.PhotoDaoImpl;
+import ua.procamp.model.Account;
+import ua.procamp.model.Photo;
+import ua.procamp.model.PhotoComment;
+import ua.procamp.util.TestDataGenerator;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Compares {@link AccountDao#saveAll} and {@link PhotoDao#saveAll} in the default persistence units with the bulk
+ * ones, that use JDBC batching. Photos and comments get pooled ids in both units, accounts only in the bulk one.
+ * Besides throughput it reports the numbers of saved entities and prepared JDBC statements, taken from Hibernate
+ * statistics. JMH sums these counters over iterations, so divide {@code statements} by {@code entities} to get the
+ * number of statements per entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkSaveBenchmark {
+    private static final int COMMENTS_PER_PHOTO = 4;
+
+    @Param("1000")
+    private int entityCount;
+    @Param({"false", "true"})
+    private boolean bulk;
+
+    private EntityManagerFactory accountEmf;
+    private EntityManagerFactory photoEmf;
+    private AccountDao accountDao;
+    private PhotoDao photoDao;
+    private Account template;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        Map<String, String> statistics = Map.of("hibernate.generate_statistics", "true");
+        accountEmf = EntityManagerFactories.create(bulk ? "SingleAccountEntityH2Bulk" : "SingleAccountEntityH2", statistics);
+        photoEmf = EntityManagerFactories.create(bulk ? "PhotoCommentsBulk" : "PhotoComments", statistics);
+        accountDao = new AccountDaoImpl(accountEmf);
+        photoDao = new PhotoDaoImpl(photoEmf);
+        template = TestDataGenerator.generateAccount();
+    }
+
+    @TearDown
+    public void tearDown() {
+        accountEmf.close();
+        photoEmf.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StatementCounters {
+        public long entities;
+        public long statements;
+
+        private long initialStatements;
+
+        void start(Statistics statistics) {
+            initialStatements = statistics.getPrepareStatementCount();
+        }
+
+        void saved(Statistics statistics, int entityCount) {
+            entities += entityCount;
+            statements += statistics.getPrepareStatementCount() - initialStatements;
+        }
+    }
+
+    @Benchmark
+    public List<Account> saveAllAccounts(StatementCounters counters) {
+        Statistics statistics = accountEmf.unwrap(SessionFactory.class).getStatistics();
+        List<Account> accounts = Stream.generate(this::newAccount).limit(entityCount).collect(toList());
+        counters.start(statistics);
+        accountDao.saveAll(accounts);
+        counters.saved(statistics, accounts.size());
+        return accounts;
+    }
+
+    @Benchmark
+    public List<Photo> saveAllPhotos(StatementCounters counters) {
+        Statistics statistics = photoEmf.unwrap(SessionFactory.class).getStatistics();
+        List<Photo> photos = Stream.generate(this::newPhoto).limit(entityCount / (COMMENTS_PER_PHOTO + 1)).collect(toList());
+        counters.start(statistics);
+        photoDao.saveAll(photos);
+        counters.saved(statistics, photos.size() * (COMMENTS_PER_PHOTO + 1));
+        return photos;
+    }
+
+    private Account newAccount() {
+        Account account = new Account();
+        account.setFirstName(template.getFirstName());
+        account.setLastName(template.getLastName());
+        account.setEmail(sequence.incrementAndGet() + "@benchmark.com");
+        account.setBirthday(template.getBirthday());
+        account.setGender(template.getGender());
+        account.setBalance(template.getBalance());
+        account.setCreationTime(LocalDateTime.now());
+        return account;
+    }
+
+    private Photo newPhoto() {
+        Photo photo = new Photo();
+        photo.setUrl("https://photos.com/" + sequence.incrementAndGet());
+        for (int i = 0; i < COMMENTS_PER_PHOTO; i++) {
+            PhotoComment comment = new PhotoComment();
+            comment.setText("Comment " + i);
+            comment.setCreatedOn(LocalDateTime.now());
+            photo.addComment(comment);
+        }
+        return photo;
+    }
+}
@@ -0,0 +1,64 @@
+package ua.procamp.benchmark;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.CompanyDao;
+import ua.procamp.dao.CompanyDaoImpl;
+import ua.procamp.model.Company;
+import ua.procamp.model.Product;
+import ua.procamp.util.EntityManagerUtil;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of {@link CompanyDaoImpl#findByIdFetchProducts(Long)} on an in-memory H2 database. Run it with
+ * {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompanyDaoBenchmark {
+    @Param("100")
+    private int companyCount;
+    @Param("20")
+    private int productsPerCompany;
+
+    private EntityManagerFactory emf;
+    private CompanyDao companyDao;
+    private long[] companyIds;
+
+    @Setup
+    public void setUp() {
+        emf = EntityManagerFactories.create("CompanyProducts");
+        companyDao = new CompanyDaoImpl(emf);
+        companyIds = new long[companyCount];
+        new EntityManagerUtil(emf).performWithinTx(entityManager -> {
+            for (int i = 0; i < companyCount; i++) {
+                Company company = new Company();
+                company.setName("Company " + i);
+                entityManager.persist(company);
+                for (int j = 0; j < productsPerCompany; j++) {
+                    Product product = new Product();
+                    product.setName("Product " + j);
+                    company.addProduct(product);
+                    entityManager.persist(product);
+                }
+                companyIds[i] = company.getId();
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @Benchmark
+    public Company findByIdFetchProducts() {
+        return companyDao.findByIdFetchProducts(companyIds[RandomUtils.nextInt(0, companyCount)]);
+    }
+}
@@ -0,0 +1,23 @@
+package ua.procamp.benchmark;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link EntityManagerFactories} creates entity manager factories of the exercise persistence units with SQL logging
+ * turned off, so that printing statements does not distort benchmark results.
+ */
+public class EntityManagerFactories {
+    public static EntityManagerFactory create(String persistenceUnitName) {
+        return create(persistenceUnitName, Map.of());
+    }
+
+    public static EntityManagerFactory create(String persistenceUnitName, Map<String, String> properties) {
+        Map<String, String> allProperties = new HashMap<>(properties);
+        allProperties.put("hibernate.show_sql", "false");
+        allProperties.put("hibernate.format_sql", "false");
+        return Persistence.createEntityManagerFactory(persistenceUnitName, allProperties);
+    }
+}
@@ -0,0 +1,55 @@
+package ua.procamp.benchmark;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.PhotoDao;
+import ua.procamp.dao.PhotoDaoImpl;
+import ua.procamp.model.Photo;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of {@link PhotoDaoImpl#addComment(long, String)} on an in-memory H2 database. Comments are
+ * added to random photos, so the number of comments per photo grows slowly during the run. Run it with
+ * {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PhotoDaoBenchmark {
+    @Param("100")
+    private int photoCount;
+
+    private EntityManagerFactory emf;
+    private PhotoDao photoDao;
+    private long[] photoIds;
+
+    @Setup
+    public void setUp() {
+        emf = EntityManagerFactories.create("PhotoComments");
+        photoDao = new PhotoDaoImpl(emf);
+        photoIds = new long[photoCount];
+        for (int i = 0; i < photoCount; i++) {
+            Photo photo = new Photo();
+            photo.setUrl("https://photos.com/" + i);
+            photo.setDescription(RandomStringUtils.randomAlphabetic(20));
+            photoDao.save(photo);
+            photoIds[i] = photo.getId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @Benchmark
+    public void addComment() {
+        photoDao.addComment(photoIds[RandomUtils.nextInt(0, photoCount)], "Nice photo!");
+    }
+}
@@ -0,0 +1,69 @@
+package ua.procamp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ua.procamp.dao.PhotoDao;
+import ua.procamp.dao.PhotoDaoImpl;
+import ua.procamp.model.Photo;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Inserts comments with {@link PhotoDao#addComments(long, List)} using ids from the shared {@code hibernate_sequence}
+ * without allocation, and from the per-entity pooled-lo sequences of the {@code PhotoComments} unit. Besides
+ * throughput it reports the numbers of inserted comments and sequence calls. JMH sums these counters over iterations,
+ * so divide {@code sequenceCalls} by {@code inserts} to get the number of calls per insert.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SequenceAllocationBenchmark {
+    @Param("10000")
+    private int insertCount;
+    @Param({"PhotoCommentsSharedSequence", "PhotoComments"})
+    private String persistenceUnit;
+
+    private EntityManagerFactory emf;
+    private PhotoDao photoDao;
+    private long photoId;
+    private List<String> comments;
+
+    @Setup
+    public void setUp() {
+        emf = EntityManagerFactories.create(persistenceUnit,
+                Map.of("hibernate.session_factory.statement_inspector", SequenceCallCounter.class.getName()));
+        photoDao = new PhotoDaoImpl(emf);
+        Photo photo = new Photo();
+        photo.setUrl("https://photos.com/sequence");
+        photoDao.save(photo);
+        photoId = photo.getId();
+        comments = IntStream.range(0, insertCount).mapToObj(i -> "Comment " + i).collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SequenceCounters {
+        public long inserts;
+        public long sequenceCalls;
+    }
+
+    @Benchmark
+    public void addComments(SequenceCounters counters) {
+        long initialSequenceCalls = SequenceCallCounter.getSequenceCallCount();
+        photoDao.addComments(photoId, comments);
+        counters.inserts += comments.size();
+        counters.sequenceCalls += SequenceCallCounter.getSequenceCallCount() - initialSequenceCalls;
+    }
+}
@@ -0,0 +1,28 @@
+package ua.procamp.benchmark;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link SequenceCallCounter} counts statements that fetch the next value of a database sequence. Hibernate creates
+ * the inspector itself from the {@code hibernate.session_factory.statement_inspector} setting, so the count is kept
+ * in a static field and covers every entity manager factory configured with it.
+ */
+public class SequenceCallCounter implements StatementInspector {
+    private static final LongAdder SEQUENCE_CALLS = new LongAdder();
+
+    public static long getSequenceCallCount() {
+        return SEQUENCE_CALLS.sum();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String lowerCaseSql = sql.toLowerCase(Locale.ROOT);
+        if (lowerCaseSql.contains("next value for") || lowerCaseSql.contains("nextval(")) {
+            SEQUENCE_CALLS.increment();
+        }
+        return sql;
+    }
+}
@@ -1,7 +1,10 @@
 package ua.procamp.dao;
 
 import ua.procamp.model.Photo;
+import ua.procamp.model.PhotoComment;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -16,6 +19,14 @@ public interface PhotoDao {
      */
     void save(Photo photo);
 
+    /**
+     * Saves new photos with their comments in one transaction and sets ids. Inserts are sent in JDBC batches when
+     * the persistence unit enables batching.
+     *
+     * @param photos new photos
+     */
+    void saveAll(Collection<Photo> photos);
+
     /**
      * Retrieves a photo from the database by its id
      *
@@ -24,6 +35,14 @@ public interface PhotoDao {
      */
     Photo findById(long id);
 
+    /**
+     * Retrieves photos by ids with one {@code IN} query per batch of ids
+     *
+     * @param ids photo ids
+     * @return found photos in the order of given ids, ids that do not exist are skipped
+     */
+    List<Photo> findAllById(Collection<Long> ids);
+
     /**
      * Returns a list of all stored photos
      *
@@ -31,6 +50,31 @@ public interface PhotoDao {
      */
     List<Photo> findAll();
 
+    /**
+     * Retrieves a photo with its comments by one query
+     *
+     * @param id photo id
+     * @return photo instance with loaded comments
+     */
+    Photo findByIdWithComments(long id);
+
+    /**
+     * Returns all stored photos with their comments loaded by one query
+     *
+     * @return list of stored photos ordered by id
+     */
+    List<Photo> findAllWithComments();
+
+    /**
+     * Returns a page of photos ordered by id with their comments. Uses keyset pagination and loads the page with
+     * two queries whatever its size: one for photo ids and one for photos with comments.
+     *
+     * @param afterId id of the last photo of the previous page, {@code null} for the first page
+     * @param limit   maximum number of photos in the page
+     * @return photos with id greater than {@code afterId} and loaded comments
+     */
+    List<Photo> findPageWithComments(Long afterId, int limit);
+
     /**
      * Removes a photo from the database
      *
@@ -38,12 +82,71 @@ public interface PhotoDao {
      */
     void remove(Photo photo);
 
+    /**
+     * Removes photos with all their comments by bulk delete statements, without loading photos or comments. Ids are
+     * processed in chunks, and every chunk costs two statements: one for comments and one for photos. All chunks are
+     * removed in one transaction. Not existing ids are ignored.
+     *
+     * @param photoIds ids of photos to remove
+     * @return numbers of deleted photos and comments
+     */
+    PhotoRemovalResult removeAll(Collection<Long> photoIds);
+
+    /**
+     * Removes photos created before a given time with all their comments, the same way as {@link #removeAll(Collection)}.
+     * Every chunk is removed in its own transaction, so a long retention run does not hold locks on all rows till the
+     * end. If a chunk fails, previous chunks stay removed. Photos without creation time are kept.
+     *
+     * @param createdBefore exclusive upper bound of photo creation time
+     * @return numbers of deleted photos and comments
+     */
+    PhotoRemovalResult removeOlderThan(LocalDateTime createdBefore);
+
+    /**
+     * Returns a page of photo comments ordered by id. Uses keyset pagination on the photo_comment(photo_id, id) index,
+     * so any page costs the same and {@link Photo#getComments()} is never loaded.
+     *
+     * @param photoId        photo id
+     * @param afterCommentId id of the last comment of the previous page, {@code null} for the first page
+     * @param limit          maximum number of comments in the page
+     * @return comments with id greater than {@code afterCommentId}
+     */
+    List<PhotoComment> findComments(long photoId, Long afterCommentId, int limit);
+
+    /**
+     * Counts photo comments with an index-only query. {@link Photo#getCommentCount()} returns the same number without
+     * a query when a photo is already loaded.
+     *
+     * @param photoId photo id
+     * @return number of photo comments
+     */
+    long countComments(long photoId);
+
     /**
      * Adds a new comment to an existing photo. This method does not require additional SQL select methods to load
-     * {@link Photo}.
+     * {@link Photo}. Besides the insert it runs one update of the comment counter, which locks the photo row until
+     * commit. Comments added to the same photo at the same time therefore commit one after another, and in return
+     * {@link Photo#getCommentCount()} stays exact.
      *
-     * @param photoId
-     * @param comment
+     * @param photoId id of an existing photo
+     * @param comment comment text
      */
     void addComment(long photoId, String comment);
+
+    /**
+     * Adds new comments to an existing photo in one transaction. Comments are inserted in JDBC batches, and neither
+     * the photo nor its existing comments are loaded. The comment counter of the photo is updated once.
+     *
+     * @param photoId  id of an existing photo
+     * @param comments comment texts
+     */
+    void addComments(long photoId, List<String> comments);
+
+    /**
+     * Removes a comment and decrements the comment counter of its photo with two statements. Neither the photo nor
+     * its comments are loaded.
+     *
+     * @param commentId comment id
+     */
+    void removeComment(long commentId);
 }
@@ -1,20 +1,37 @@
 package ua.procamp.dao;
 
 import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
 import ua.procamp.model.Photo;
 import ua.procamp.model.PhotoComment;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityNotFoundException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Please note that you should not use auto-commit mode for your implementation.
  */
 public class PhotoDaoImpl implements PhotoDao {
+    // number of ids bound to one IN query by findAllById
+    private static final int MULTI_LOAD_BATCH_SIZE = 500;
+    // number of photos deleted by one pair of bulk statements in removeAll and removeOlderThan
+    private static final int REMOVE_BATCH_SIZE = 500;
+    // number of comment inserts sent to the database in one JDBC batch by addComments
+    private static final int COMMENT_BATCH_SIZE = 50;
+    private static final String FETCH_GRAPH_HINT = "javax.persistence.fetchgraph";
+
     private EntityManagerFactory entityManagerFactory;
 
     public PhotoDaoImpl(EntityManagerFactory entityManagerFactory) {
@@ -26,12 +43,36 @@ public class PhotoDaoImpl implements PhotoDao {
         consumeWithTx(em -> em.persist(photo));
     }
 
+    @Override
+    public void saveAll(Collection<Photo> photos) {
+        Objects.requireNonNull(photos);
+        photos.forEach(Objects::requireNonNull);
+        consumeWithTx(em -> photos.forEach(em::persist));
+    }
+
     @Override
     public Photo findById(long id) {
-        return readWithTx(em ->
-                em.createQuery("select p from photo p where p.id = :id", Photo.class)
-                        .setParameter("id", id).getSingleResult()
-        );
+        return readWithTx(em -> {
+            Photo photo = em.find(Photo.class, id);
+            if (photo == null) {
+                throw new EntityNotFoundException(String.format("Photo with id = %d does not exist", id));
+            }
+            return photo;
+        });
+    }
+
+    @Override
+    public List<Photo> findAllById(Collection<Long> ids) {
+        Objects.requireNonNull(ids);
+        ids.forEach(Objects::requireNonNull);
+        return readWithTx(em -> em.unwrap(Session.class)
+                .byMultipleIds(Photo.class)
+                .withBatchSize(MULTI_LOAD_BATCH_SIZE)
+                .enableSessionCheck(true)
+                .multiLoad(new ArrayList<>(new LinkedHashSet<>(ids)))
+                .stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
     }
 
     @Override
@@ -39,6 +80,48 @@ public class PhotoDaoImpl implements PhotoDao {
         return readWithTx(em -> em.createQuery("select p from photo p", Photo.class).getResultList());
     }
 
+    @Override
+    public Photo findByIdWithComments(long id) {
+        return readWithTx(em -> {
+            Map<String, Object> hints = Map.of(FETCH_GRAPH_HINT, em.getEntityGraph(Photo.WITH_COMMENTS_GRAPH));
+            Photo photo = em.find(Photo.class, id, hints);
+            if (photo == null) {
+                throw new EntityNotFoundException(String.format("Photo with id = %d does not exist", id));
+            }
+            return photo;
+        });
+    }
+
+    @Override
+    public List<Photo> findAllWithComments() {
+        return readWithTx(em -> em.createQuery("select distinct p from photo p order by p.id", Photo.class)
+                .setHint(FETCH_GRAPH_HINT, em.getEntityGraph(Photo.WITH_COMMENTS_GRAPH))
+                .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                .getResultList());
+    }
+
+    @Override
+    public List<Photo> findPageWithComments(Long afterId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit should be positive");
+        }
+        return readWithTx(em -> {
+            // a fetched collection cannot be limited in SQL, so the page is selected by ids first
+            List<Long> ids = em.createQuery("select p.id from photo p where p.id > :afterId order by p.id", Long.class)
+                    .setParameter("afterId", afterId == null ? Long.MIN_VALUE : afterId)
+                    .setMaxResults(limit)
+                    .getResultList();
+            if (ids.isEmpty()) {
+                return Collections.<Photo>emptyList();
+            }
+            return em.createQuery("select distinct p from photo p where p.id in :ids order by p.id", Photo.class)
+                    .setParameter("ids", ids)
+                    .setHint(FETCH_GRAPH_HINT, em.getEntityGraph(Photo.WITH_COMMENTS_GRAPH))
+                    .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                    .getResultList();
+        });
+    }
+
     @Override
     public void remove(Photo photo) {
         Objects.requireNonNull(photo);
@@ -49,19 +132,150 @@ public class PhotoDaoImpl implements PhotoDao {
         });
     }
 
+    @Override
+    public PhotoRemovalResult removeAll(Collection<Long> photoIds) {
+        Objects.requireNonNull(photoIds);
+        photoIds.forEach(Objects::requireNonNull);
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(photoIds));
+        return writeWithTx(em -> {
+            PhotoRemovalResult result = new PhotoRemovalResult(0, 0);
+            for (int from = 0; from < distinctIds.size(); from += REMOVE_BATCH_SIZE) {
+                List<Long> chunk = distinctIds.subList(from, Math.min(from + REMOVE_BATCH_SIZE, distinctIds.size()));
+                result = result.plus(removeChunk(em, chunk));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public PhotoRemovalResult removeOlderThan(LocalDateTime createdBefore) {
+        Objects.requireNonNull(createdBefore);
+        PhotoRemovalResult result = new PhotoRemovalResult(0, 0);
+        PhotoRemovalResult chunkResult;
+        do {
+            chunkResult = writeWithTx(em -> {
+                List<Long> chunk = em.createQuery("select p.id from photo p where p.createdOn < :createdBefore " +
+                        "order by p.id", Long.class)
+                        .setParameter("createdBefore", createdBefore)
+                        .setMaxResults(REMOVE_BATCH_SIZE)
+                        .getResultList();
+                return chunk.isEmpty() ? new PhotoRemovalResult(0, 0) : removeChunk(em, chunk);
+            });
+            result = result.plus(chunkResult);
+        } while (chunkResult.getDeletedPhotoCount() > 0);
+        return result;
+    }
+
+    /**
+     * Deletes comments first, since they reference photos. Bulk statements bypass the persistence context, so it is
+     * flushed before and cleared after them to not keep deleted entities managed.
+     */
+    private PhotoRemovalResult removeChunk(EntityManager em, List<Long> photoIds) {
+        em.flush();
+        int deletedComments = em.createQuery("delete from photo_comment c where c.photo.id in :ids")
+                .setParameter("ids", photoIds)
+                .executeUpdate();
+        int deletedPhotos = em.createQuery("delete from photo p where p.id in :ids")
+                .setParameter("ids", photoIds)
+                .executeUpdate();
+        em.clear();
+        return new PhotoRemovalResult(deletedPhotos, deletedComments);
+    }
+
+    @Override
+    public List<PhotoComment> findComments(long photoId, Long afterCommentId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit should be positive");
+        }
+        return readWithTx(em -> em.createQuery("select c from photo_comment c join fetch c.photo " +
+                "where c.photo.id = :photoId and c.id > :afterId order by c.id", PhotoComment.class)
+                .setParameter("photoId", photoId)
+                .setParameter("afterId", afterCommentId == null ? Long.MIN_VALUE : afterCommentId)
+                .setMaxResults(limit)
+                .getResultList());
+    }
+
+    @Override
+    public long countComments(long photoId) {
+        return readWithTx(em -> em.createQuery("select count(c) from photo_comment c where c.photo.id = :photoId",
+                Long.class)
+                .setParameter("photoId", photoId)
+                .getSingleResult());
+    }
+
     @Override
     public void addComment(long photoId, String comment) {
         Objects.requireNonNull(comment);
         consumeWithTx(em -> {
-            Photo p = em.find(Photo.class, photoId);
-            PhotoComment pc = new PhotoComment();
-            pc.setText(comment);
-            pc.setPhoto(p);
-            em.persist(pc);
-            p.addComment(pc);
+            em.persist(createComment(em.getReference(Photo.class, photoId), comment));
+            em.flush();
+            updateCommentCount(em, photoId, 1);
+        });
+    }
+
+    @Override
+    public void addComments(long photoId, List<String> comments) {
+        Objects.requireNonNull(comments);
+        comments.forEach(Objects::requireNonNull);
+        consumeWithTx(em -> {
+            em.unwrap(Session.class).setJdbcBatchSize(COMMENT_BATCH_SIZE);
+            Photo photo = em.getReference(Photo.class, photoId);
+            comments.forEach(comment -> em.persist(createComment(photo, comment)));
+            em.flush();
+            updateCommentCount(em, photoId, comments.size());
+        });
+    }
+
+    /**
+     * Decrements the counter of the photo found by the comment, which locks the photo row, and then deletes the
+     * comment. If a concurrent transaction deleted the comment first, nothing is deleted and the decrement is rolled
+     * back, so the counter stays exact.
+     */
+    @Override
+    public void removeComment(long commentId) {
+        consumeWithTx(em -> {
+            int updatedPhotos = em.createQuery("update photo p set p.commentCount = p.commentCount - 1 " +
+                    "where p.id = (select c.photo.id from photo_comment c where c.id = :id)")
+                    .setParameter("id", commentId)
+                    .executeUpdate();
+            int deletedComments = updatedPhotos == 0 ? 0
+                    : em.createQuery("delete from photo_comment c where c.id = :id")
+                    .setParameter("id", commentId)
+                    .executeUpdate();
+            if (deletedComments == 0) {
+                throw new EntityNotFoundException(
+                        String.format("Photo comment with id = %d does not exist", commentId));
+            }
         });
     }
 
+    /**
+     * Changes the comment counter with a single update statement. The update locks the photo row until commit, so
+     * writers of comments to the same photo wait for each other. Comments are flushed before it, so the lock is held
+     * only for the commit rather than for the inserts as well. It also checks that the photo exists, since
+     * {@link EntityManager#getReference(Class, Object)} does not.
+     */
+    private void updateCommentCount(EntityManager em, long photoId, long delta) {
+        int updatedRows = em.createQuery("update photo p set p.commentCount = p.commentCount + :delta where p.id = :id")
+                .setParameter("delta", delta)
+                .setParameter("id", photoId)
+                .executeUpdate();
+        if (updatedRows == 0) {
+            throw new EntityNotFoundException(String.format("Photo with id = %d does not exist", photoId));
+        }
+    }
+
+    /**
+     * Creates a comment on the owning side only, so neither the photo nor its comments collection is loaded. A comment
+     * is visible in {@link Photo#getComments()} once the collection is loaded in a new persistence context.
+     */
+    private PhotoComment createComment(Photo photo, String text) {
+        PhotoComment photoComment = new PhotoComment();
+        photoComment.setText(text);
+        photoComment.setPhoto(photo);
+        return photoComment;
+    }
+
     private void consumeWithTx(Consumer<EntityManager> entityManagerTFunction) {
         EntityManager entityManager = entityManagerFactory.createEntityManager();
         entityManager.getTransaction().begin();
@@ -76,6 +290,21 @@ public class PhotoDaoImpl implements PhotoDao {
         }
     }
 
+    private <T> T writeWithTx(Function<EntityManager, T> entityManagerTFunction) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        try {
+            T result = entityManagerTFunction.apply(entityManager);
+            entityManager.getTransaction().commit();
+            return result;
+        } catch (Exception e) {
+            entityManager.getTransaction().rollback();
+            throw new RuntimeException("Write transaction was failed", e);
+        } finally {
+            entityManager.close();
+        }
+    }
+
     private <T> T readWithTx(Function<EntityManager, T> entityManagerTFunction) {
         EntityManager entityManager = entityManagerFactory.createEntityManager();
         entityManager.getTransaction().begin();
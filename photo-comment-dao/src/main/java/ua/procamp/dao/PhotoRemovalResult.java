@@ -0,0 +1,21 @@
+package ua.procamp.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link PhotoRemovalResult} tells how many photos and comments were deleted by a bulk removal.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PhotoRemovalResult {
+    private final long deletedPhotoCount;
+    private final long deletedCommentCount;
+
+    PhotoRemovalResult plus(PhotoRemovalResult other) {
+        return new PhotoRemovalResult(deletedPhotoCount + other.deletedPhotoCount,
+                deletedCommentCount + other.deletedCommentCount);
+    }
+}
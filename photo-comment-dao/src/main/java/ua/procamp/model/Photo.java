@@ -1,8 +1,10 @@
 package ua.procamp.model;
 
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,25 +32,44 @@ import java.util.List;
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Entity(name = "photo")
 @Table(name = "photo")
+@NamedEntityGraph(name = Photo.WITH_COMMENTS_GRAPH, attributeNodes = @NamedAttributeNode("comments"))
 public class Photo {
+    /**
+     * Entity graph that loads comments together with a photo
+     */
+    public static final String WITH_COMMENTS_GRAPH = "photo-with-comments";
+
     @Id
     @EqualsAndHashCode.Include
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "photo_seq")
+    @SequenceGenerator(name = "photo_seq", sequenceName = "photo_seq", allocationSize = 50)
     private Long id;
     @Column(unique = true, nullable = false)
     private String url;
     private String description;
+    private LocalDateTime createdOn;
     @Setter(AccessLevel.PRIVATE)
+    @BatchSize(size = 50)
     @OneToMany(mappedBy = "photo", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<PhotoComment> comments = new ArrayList<>();
+    /**
+     * Number of comments, kept up to date by {@link #addComment(PhotoComment)}, {@link #removeComment(PhotoComment)}
+     * and {@code PhotoDao}, so it can be read without loading {@link #comments}
+     */
+    @Setter(AccessLevel.PRIVATE)
+    @Column(nullable = false)
+    private long commentCount;
 
     public void addComment(PhotoComment comment) {
         comments.add(comment);
         comment.setPhoto(this);
+        commentCount++;
     }
 
     public void removeComment(PhotoComment comment) {
-        comments.remove(comment);
+        if (comments.remove(comment)) {
+            commentCount--;
+        }
         comment.setPhoto(null);
     }
 
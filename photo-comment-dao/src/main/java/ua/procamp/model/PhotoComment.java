@@ -27,10 +27,11 @@ import java.time.LocalDateTime;
 @Setter
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Entity(name = "photo_comment")
-@Table(name = "photo_comment")
+@Table(name = "photo_comment", indexes = @Index(name = "photo_comment_photo_id_id_idx", columnList = "photo_id, id"))
 public class PhotoComment {
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "photo_comment_seq")
+    @SequenceGenerator(name = "photo_comment_seq", sequenceName = "photo_comment_seq", allocationSize = 50)
     @EqualsAndHashCode.Include
     private Long id;
     @Column(nullable = false)
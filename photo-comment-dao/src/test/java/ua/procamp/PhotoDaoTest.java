@@ -2,20 +2,31 @@ package ua.procamp;
 
 import ua.procamp.dao.PhotoDao;
 import ua.procamp.dao.PhotoDaoImpl;
+import ua.procamp.dao.PhotoRemovalResult;
 import ua.procamp.model.Photo;
+import ua.procamp.model.PhotoComment;
 import ua.procamp.util.EntityManagerUtil;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static ua.procamp.util.PhotoTestDataGenerator.createListOfRandomComments;
 import static ua.procamp.util.PhotoTestDataGenerator.createListOfRandomPhotos;
 import static ua.procamp.util.PhotoTestDataGenerator.createRandomPhoto;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class PhotoDaoTest {
     private EntityManagerUtil emUtil;
@@ -44,6 +55,17 @@ public class PhotoDaoTest {
         assertThat(fountPhoto, equalTo(photo));
     }
 
+    @Test
+    public void testSaveAllPhotos() {
+        List<Photo> listOfRandomPhotos = createListOfRandomPhotos(5);
+
+        photoDao.saveAll(listOfRandomPhotos);
+
+        List<Photo> foundPhotos = emUtil.performReturningWithinTx(entityManager ->
+                entityManager.createQuery("select p from photo p", Photo.class).getResultList());
+        assertThat(foundPhotos, containsInAnyOrder(listOfRandomPhotos.toArray()));
+    }
+
     @Test
     public void testFindPhotoById() {
         Photo photo = createRandomPhoto();
@@ -64,6 +86,79 @@ public class PhotoDaoTest {
         assertThat(foundPhotos, containsInAnyOrder(listOfRandomPhotos.toArray()));
     }
 
+    @Test
+    public void testFindAllPhotosById() {
+        List<Photo> listOfRandomPhotos = createListOfRandomPhotos(5);
+        emUtil.performWithinTx(entityManager -> listOfRandomPhotos.forEach(entityManager::persist));
+        List<Long> ids = listOfRandomPhotos.stream().map(Photo::getId).collect(Collectors.toList());
+        Collections.reverse(ids);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<Photo> foundPhotos = photoDao.findAllById(ids);
+
+        assertThat(foundPhotos.stream().map(Photo::getId).collect(Collectors.toList()), equalTo(ids));
+        assertThat(statistics.getPrepareStatementCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testFindPhotoByIdWithComments() {
+        Photo photo = createRandomPhoto();
+        createListOfRandomComments(3).forEach(photo::addComment);
+        emUtil.performWithinTx(entityManager -> entityManager.persist(photo));
+        Statistics statistics = enableStatistics();
+
+        Photo foundPhoto = photoDao.findByIdWithComments(photo.getId());
+
+        assertThat(Hibernate.isInitialized(foundPhoto.getComments()), is(true));
+        assertThat(foundPhoto.getComments(), hasSize(3));
+        assertThat(statistics.getPrepareStatementCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testFindAllPhotosWithComments() {
+        List<Photo> listOfRandomPhotos = createListOfRandomPhotosWithComments(10, 3);
+        emUtil.performWithinTx(entityManager -> listOfRandomPhotos.forEach(entityManager::persist));
+        Statistics statistics = enableStatistics();
+
+        List<Photo> foundPhotos = photoDao.findAllWithComments();
+
+        assertThat(foundPhotos, contains(listOfRandomPhotos.toArray()));
+        foundPhotos.forEach(photo -> assertThat(photo.getComments(), hasSize(3)));
+        assertThat(statistics.getPrepareStatementCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testFindPageOfPhotosWithComments() {
+        List<Photo> listOfRandomPhotos = createListOfRandomPhotosWithComments(30, 3);
+        emUtil.performWithinTx(entityManager -> listOfRandomPhotos.forEach(entityManager::persist));
+        Statistics statistics = enableStatistics();
+
+        List<Photo> firstPage = photoDao.findPageWithComments(null, 20);
+        List<Photo> secondPage = photoDao.findPageWithComments(firstPage.get(firstPage.size() - 1).getId(), 20);
+
+        assertThat(firstPage, contains(listOfRandomPhotos.subList(0, 20).toArray()));
+        assertThat(secondPage, contains(listOfRandomPhotos.subList(20, 30).toArray()));
+        firstPage.forEach(photo -> assertThat(photo.getComments(), hasSize(3)));
+        secondPage.forEach(photo -> assertThat(photo.getComments(), hasSize(3)));
+        assertThat(statistics.getPrepareStatementCount(), equalTo(4L));
+    }
+
+    @Test
+    public void testPhotoCommentsAreBatchFetched() {
+        List<Photo> listOfRandomPhotos = createListOfRandomPhotosWithComments(60, 2);
+        emUtil.performWithinTx(entityManager -> listOfRandomPhotos.forEach(entityManager::persist));
+        Statistics statistics = enableStatistics();
+
+        emUtil.performWithinTx(entityManager -> entityManager.createQuery("select p from photo p", Photo.class)
+                .getResultList()
+                .forEach(photo -> assertThat(photo.getComments(), hasSize(2))));
+
+        // one query for photos and one per 50 comment collections instead of one per photo
+        assertThat(statistics.getPrepareStatementCount(), equalTo(3L));
+    }
+
     @Test
     public void testRemovePhoto() {
         Photo photo = createRandomPhoto();
@@ -88,4 +183,158 @@ public class PhotoDaoTest {
                     hasItem(hasProperty("text", equalTo("Nice picture!"))));
         });
     }
+
+    @Test
+    public void testAddPhotoCommentDoesNotLoadPhoto() {
+        Photo photo = createRandomPhoto();
+        createListOfRandomComments(3).forEach(photo::addComment);
+        emUtil.performWithinTx(entityManager -> entityManager.persist(photo));
+        Statistics statistics = enableStatistics();
+
+        photoDao.addComment(photo.getId(), "Nice picture!");
+
+        assertThat(statistics.getEntityLoadCount(), equalTo(0L));
+        assertThat(statistics.getCollectionLoadCount(), equalTo(0L));
+        assertThat(statistics.getEntityInsertCount(), equalTo(1L));
+        // the comment insert and the counter update
+        assertThat(statistics.getPrepareStatementCount(), equalTo(2L));
+    }
+
+    @Test
+    public void testAddPhotoComments() {
+        Photo photo = createRandomPhoto();
+        emUtil.performWithinTx(entityManager -> entityManager.persist(photo));
+        List<String> comments = IntStream.range(0, 120).mapToObj(i -> "Comment " + i).collect(Collectors.toList());
+        Statistics statistics = enableStatistics();
+
+        photoDao.addComments(photo.getId(), comments);
+
+        assertThat(statistics.getEntityLoadCount(), equalTo(0L));
+        assertThat(statistics.getCollectionLoadCount(), equalTo(0L));
+        assertThat(statistics.getEntityInsertCount(), equalTo(120L));
+        emUtil.performWithinTx(entityManager -> {
+            Photo managedPhoto = entityManager.find(Photo.class, photo.getId());
+            assertThat(managedPhoto.getComments(), hasSize(120));
+        });
+    }
+
+    @Test
+    public void testAddPhotoCommentsToNotExistingPhoto() {
+        assertThrows(RuntimeException.class, () -> photoDao.addComments(-1L, List.of("Nice picture!")));
+    }
+
+    @Test
+    public void testFindPhotoComments() {
+        Photo photo = createRandomPhoto();
+        List<PhotoComment> comments = createListOfRandomComments(25);
+        comments.forEach(photo::addComment);
+        Photo otherPhoto = createRandomPhoto();
+        createListOfRandomComments(5).forEach(otherPhoto::addComment);
+        emUtil.performWithinTx(entityManager -> {
+            entityManager.persist(photo);
+            entityManager.persist(otherPhoto);
+        });
+        Statistics statistics = enableStatistics();
+
+        List<PhotoComment> firstPage = photoDao.findComments(photo.getId(), null, 20);
+        List<PhotoComment> secondPage = photoDao.findComments(photo.getId(), firstPage.get(19).getId(), 20);
+
+        assertThat(firstPage, contains(comments.subList(0, 20).toArray()));
+        assertThat(secondPage, contains(comments.subList(20, 25).toArray()));
+        assertThat(statistics.getPrepareStatementCount(), equalTo(2L));
+        assertThat(statistics.getCollectionLoadCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testCountPhotoComments() {
+        Photo photo = createRandomPhoto();
+        createListOfRandomComments(7).forEach(photo::addComment);
+        emUtil.performWithinTx(entityManager -> entityManager.persist(photo));
+
+        long commentCount = photoDao.countComments(photo.getId());
+
+        assertThat(commentCount, equalTo(7L));
+        assertThat(photoDao.findById(photo.getId()).getCommentCount(), equalTo(7L));
+    }
+
+    @Test
+    public void testCommentCountIsMaintained() {
+        Photo photo = createRandomPhoto();
+        createListOfRandomComments(2).forEach(photo::addComment);
+        emUtil.performWithinTx(entityManager -> entityManager.persist(photo));
+
+        photoDao.addComment(photo.getId(), "Nice picture!");
+        photoDao.addComments(photo.getId(), List.of("Great shot!", "Wow!"));
+        photoDao.removeComment(photo.getComments().get(0).getId());
+
+        assertThat(photoDao.findById(photo.getId()).getCommentCount(), equalTo(4L));
+        assertThat(photoDao.countComments(photo.getId()), equalTo(4L));
+    }
+
+    @Test
+    public void testRemovePhotoComment() {
+        Photo photo = createRandomPhoto();
+        createListOfRandomComments(3).forEach(photo::addComment);
+        emUtil.performWithinTx(entityManager -> entityManager.persist(photo));
+        Long commentId = photo.getComments().get(1).getId();
+        Statistics statistics = enableStatistics();
+
+        photoDao.removeComment(commentId);
+
+        // the counter update and the comment delete
+        assertThat(statistics.getPrepareStatementCount(), equalTo(2L));
+        assertThat(photoDao.findById(photo.getId()).getCommentCount(), equalTo(2L));
+        assertThat(photoDao.countComments(photo.getId()), equalTo(2L));
+        assertThrows(RuntimeException.class, () -> photoDao.removeComment(commentId));
+        assertThat(photoDao.findById(photo.getId()).getCommentCount(), equalTo(2L));
+    }
+
+    @Test
+    public void testRemoveAllPhotos() {
+        List<Photo> listOfRandomPhotos = createListOfRandomPhotosWithComments(5, 3);
+        emUtil.performWithinTx(entityManager -> listOfRandomPhotos.forEach(entityManager::persist));
+        List<Long> removedIds = List.of(listOfRandomPhotos.get(0).getId(), listOfRandomPhotos.get(2).getId(), -1L);
+        Statistics statistics = enableStatistics();
+
+        PhotoRemovalResult result = photoDao.removeAll(removedIds);
+
+        assertThat(result.getDeletedPhotoCount(), equalTo(2L));
+        assertThat(result.getDeletedCommentCount(), equalTo(6L));
+        assertThat(statistics.getPrepareStatementCount(), equalTo(2L));
+        List<Photo> remainingPhotos = photoDao.findAllWithComments();
+        assertThat(remainingPhotos, contains(listOfRandomPhotos.get(1), listOfRandomPhotos.get(3), listOfRandomPhotos.get(4)));
+        assertThat(photoDao.countComments(listOfRandomPhotos.get(0).getId()), equalTo(0L));
+    }
+
+    @Test
+    public void testRemovePhotosOlderThan() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Photo> oldPhotos = createListOfRandomPhotosWithComments(3, 2);
+        oldPhotos.forEach(photo -> photo.setCreatedOn(now.minusDays(30)));
+        Photo newPhoto = createRandomPhoto();
+        newPhoto.setCreatedOn(now);
+        emUtil.performWithinTx(entityManager -> {
+            oldPhotos.forEach(entityManager::persist);
+            entityManager.persist(newPhoto);
+        });
+
+        PhotoRemovalResult result = photoDao.removeOlderThan(now.minusDays(7));
+
+        assertThat(result.getDeletedPhotoCount(), equalTo(3L));
+        assertThat(result.getDeletedCommentCount(), equalTo(6L));
+        assertThat(photoDao.findAll(), contains(newPhoto));
+    }
+
+    private Statistics enableStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        return statistics;
+    }
+
+    private List<Photo> createListOfRandomPhotosWithComments(int size, int commentsPerPhoto) {
+        List<Photo> photos = createListOfRandomPhotos(size);
+        photos.forEach(photo -> createListOfRandomComments(commentsPerPhoto).forEach(photo::addComment));
+        return photos;
+    }
 }
@@ -0,0 +1,71 @@
+package ua.procamp.dao;
+
+import ua.procamp.model.Product;
+import ua.procamp.util.concurrent.DaoExecutor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AsyncProductDao} runs {@link ProductDao} calls on a {@link DaoExecutor} and returns their results as
+ * {@link CompletableFuture}s. Failures of the wrapped DAO complete the futures exceptionally. Streaming methods are
+ * not wrapped, since a lazy stream holds its connection until it is closed by the caller.
+ */
+public class AsyncProductDao {
+    private final ProductDao productDao;
+    private final DaoExecutor executor;
+
+    public AsyncProductDao(ProductDao productDao, DaoExecutor executor) {
+        this.productDao = Objects.requireNonNull(productDao);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    public CompletableFuture<Void> save(Product product) {
+        return executor.run(() -> productDao.save(product));
+    }
+
+    public CompletableFuture<Void> saveAll(Collection<Product> products) {
+        return executor.run(() -> productDao.saveAll(products));
+    }
+
+    public CompletableFuture<UpsertResult> upsertAll(Collection<Product> products) {
+        return executor.supply(() -> productDao.upsertAll(products));
+    }
+
+    public CompletableFuture<List<Product>> findAll() {
+        return executor.supply(productDao::findAll);
+    }
+
+    public CompletableFuture<List<Product>> findPage(Long afterId, int limit) {
+        return executor.supply(() -> productDao.findPage(afterId, limit));
+    }
+
+    public CompletableFuture<List<Product>> findPageByCreationTime(LocalDateTime afterCreationTime, Long afterId, int limit) {
+        return executor.supply(() -> productDao.findPageByCreationTime(afterCreationTime, afterId, limit));
+    }
+
+    public CompletableFuture<Product> findOne(Long id) {
+        return executor.supply(() -> productDao.findOne(id));
+    }
+
+    public CompletableFuture<Void> update(Product product) {
+        return executor.run(() -> productDao.update(product));
+    }
+
+    public CompletableFuture<Void> remove(Product product) {
+        return executor.run(() -> productDao.remove(product));
+    }
+
+    public CompletableFuture<BulkUpdateResult> removeAll(Collection<Long> ids) {
+        return executor.supply(() -> productDao.removeAll(ids));
+    }
+
+    public CompletableFuture<BulkUpdateResult> updatePrices(Map<Long, BigDecimal> prices) {
+        return executor.supply(() -> productDao.updatePrices(prices));
+    }
+}
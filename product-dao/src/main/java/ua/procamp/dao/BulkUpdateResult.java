@@ -0,0 +1,27 @@
+package ua.procamp.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * {@link BulkUpdateResult} tells which of the requested product ids were updated or removed by a bulk operation,
+ * and which of them were not found.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BulkUpdateResult {
+    private final List<Long> affectedIds;
+    private final List<Long> missingIds;
+
+    public int getAffectedCount() {
+        return affectedIds.size();
+    }
+
+    public int getMissingCount() {
+        return missingIds.size();
+    }
+}
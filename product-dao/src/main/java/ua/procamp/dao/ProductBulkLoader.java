@@ -0,0 +1,23 @@
+package ua.procamp.dao;
+
+import ua.procamp.model.Product;
+import ua.procamp.util.bulk.BulkLoader;
+import ua.procamp.util.bulk.TableMapping;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * {@link ProductBulkLoader} loads products into the {@code products} table using {@code COPY} on PostgreSQL. Product
+ * ids and creation time are generated by the database, the same as in {@link ProductDao#save(Product)}.
+ */
+public class ProductBulkLoader extends BulkLoader<Product> {
+    public static final TableMapping<Product> PRODUCTS_TABLE = new TableMapping<>("products",
+            List.of("name", "producer", "price", "expiration_date"),
+            product -> new Object[]{product.getName(), product.getProducer(), product.getPrice(),
+                    product.getExpirationDate()});
+
+    public ProductBulkLoader(DataSource dataSource) {
+        super(dataSource, PRODUCTS_TABLE);
+    }
+}
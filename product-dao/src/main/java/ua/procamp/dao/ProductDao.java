@@ -2,7 +2,12 @@ package ua.procamp.dao;
 
 import ua.procamp.model.Product;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * {@link ProductDao} is an Data Access Object pattern (DAO) that encapsulates all database access and manipulation logic.
@@ -16,6 +21,26 @@ public interface ProductDao {
      */
     void save(Product product);
 
+    /**
+     * Stores new products into the database using JDBC batches. All inserts share one connection and one statement,
+     * each batch is committed in its own transaction. Sets generated ids to the {@link Product} instances
+     *
+     * @param products new products
+     */
+    void saveAll(Collection<Product> products);
+
+    /**
+     * Inserts new products and updates existing ones using set-based statements, one statement per batch. Products
+     * with an id are inserted or updated depending on whether the row exists, products without an id are inserted
+     * and get a generated id. All batches run in one transaction, so a failure leaves the table unchanged.
+     * <p>
+     * Rows inserted with an explicit id advance PostgreSQL serial sequence past the largest such id.
+     *
+     * @param products new or stored products
+     * @return ids of inserted and updated products
+     */
+    UpsertResult upsertAll(Collection<Product> products);
+
     /**
      * Retrieves and returns all producrs from the database
      *
@@ -23,6 +48,44 @@ public interface ProductDao {
      */
     List<Product> findAll();
 
+    /**
+     * Returns a page of products ordered by id. Uses keyset pagination, so the cost of a page does not depend on
+     * how deep it is.
+     *
+     * @param afterId id of the last product of the previous page, {@code null} for the first page
+     * @param limit   maximum number of products in the page
+     * @return products with id greater than {@code afterId}
+     */
+    List<Product> findPage(Long afterId, int limit);
+
+    /**
+     * Returns a page of products ordered by creation time, products with the same creation time are ordered by id.
+     * Uses keyset pagination backed by an index on (creation_time, id).
+     *
+     * @param afterCreationTime creation time of the last product of the previous page, {@code null} for the first page
+     * @param afterId           id of the last product of the previous page, {@code null} for the first page
+     * @param limit             maximum number of products in the page
+     * @return products that follow the given one in (creation time, id) order
+     */
+    List<Product> findPageByCreationTime(LocalDateTime afterCreationTime, Long afterId, int limit);
+
+    /**
+     * Returns a lazy stream of all products. Rows are fetched from the database while the stream is consumed, so the
+     * whole table is never loaded into memory. The stream holds an open connection and must be closed after use.
+     *
+     * @return stream of all products
+     */
+    Stream<Product> streamAll();
+
+    /**
+     * Returns a lazy stream of all products that fetches rows from the database by portions of a given size.
+     * The stream holds an open connection and must be closed after use.
+     *
+     * @param fetchSize number of rows fetched from the database at once
+     * @return stream of all products
+     */
+    Stream<Product> streamAll(int fetchSize);
+
     /**
      * Returns a product object by its id
      *
@@ -44,4 +107,22 @@ public interface ProductDao {
      * @param product stored product
      */
     void remove(Product product);
+
+    /**
+     * Removes products by ids using one statement per batch, each batch is committed in its own transaction.
+     * Ids that do not exist are reported as missing instead of failing the whole operation.
+     *
+     * @param ids ids of products to remove
+     * @return removed and missing ids
+     */
+    BulkUpdateResult removeAll(Collection<Long> ids);
+
+    /**
+     * Updates prices of products by ids, each batch is committed in its own transaction. Ids that do not exist are
+     * reported as missing instead of failing the whole operation.
+     *
+     * @param prices new prices by product id
+     * @return updated and missing ids
+     */
+    BulkUpdateResult updatePrices(Map<Long, BigDecimal> prices);
 }
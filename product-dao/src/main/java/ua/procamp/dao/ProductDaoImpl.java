@@ -2,37 +2,83 @@ package ua.procamp.dao;
 
 import ua.procamp.exception.DaoOperationException;
 import ua.procamp.model.Product;
+import ua.procamp.util.SqlDialect;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.partitioningBy;
+import static java.util.stream.Collectors.toList;
 
 public class ProductDaoImpl implements ProductDao {
 
-    private final String FIND_ALL_QUERY = "SELECT * FROM products;";
-    private final String FIND_QUERY = "SELECT p.* FROM products p WHERE p.id = ?";
+    private final String FIND_ALL_QUERY = "SELECT id, name, producer, price, expiration_date, creation_time FROM products";
+    private final String FIND_FIRST_PAGE_QUERY = "SELECT id, name, producer, price, expiration_date, creation_time FROM products ORDER BY id LIMIT ?";
+    private final String FIND_PAGE_QUERY = "SELECT id, name, producer, price, expiration_date, creation_time FROM products WHERE id > ? ORDER BY id LIMIT ?";
+    private final String FIND_FIRST_PAGE_BY_CREATION_TIME_QUERY = "SELECT id, name, producer, price, expiration_date, creation_time FROM products ORDER BY creation_time, id LIMIT ?";
+    private final String FIND_PAGE_BY_CREATION_TIME_QUERY = "SELECT id, name, producer, price, expiration_date, creation_time FROM products WHERE creation_time > ? OR (creation_time = ? AND id > ?) ORDER BY creation_time, id LIMIT ?";
+    private final String FIND_QUERY = "SELECT id, name, producer, price, expiration_date, creation_time FROM products WHERE id = ?";
     private final String REMOVE_QUERY = "DELETE FROM products WHERE products.id = ?";
-    private final String INSERT_QUERY = "INSERT INTO products (name, producer, price, expiration_date) VALUES (?, ?, ?, ?);";
+    private final String INSERT_QUERY = "INSERT INTO products (name, producer, price, expiration_date) VALUES (?, ?, ?, ?)";
+    private final String POSTGRES_UPSERT_QUERY_TEMPLATE = "INSERT INTO products (id, name, producer, price, expiration_date) VALUES %s " +
+            "ON CONFLICT (id) DO UPDATE SET (name, producer, price, expiration_date) = " +
+            "(EXCLUDED.name, EXCLUDED.producer, EXCLUDED.price, EXCLUDED.expiration_date) " +
+            "RETURNING id, (xmax = 0) AS inserted";
+    private final String POSTGRES_ADVANCE_SEQUENCE_QUERY = "SELECT setval(pg_get_serial_sequence('products', 'id'), " +
+            "GREATEST(?, nextval(pg_get_serial_sequence('products', 'id'))))";
+    private final String H2_MERGE_QUERY_TEMPLATE = "MERGE INTO products (id, name, producer, price, expiration_date) KEY (id) VALUES %s";
+    private final String FIND_EXISTING_IDS_QUERY_TEMPLATE = "SELECT id FROM products WHERE id IN (%s)";
+    private final String REMOVE_ALL_QUERY_TEMPLATE = "DELETE FROM products WHERE id IN (%s)";
+    private final String POSTGRES_REMOVE_ALL_QUERY = "DELETE FROM products WHERE id = ANY(?) RETURNING id";
+    private final String UPDATE_PRICE_QUERY = "UPDATE products SET price = ? WHERE id = ?";
+    private final String POSTGRES_UPDATE_PRICES_QUERY = "UPDATE products SET price = prices.price " +
+            "FROM unnest(?::bigint[], ?::numeric[]) AS prices(id, price) WHERE products.id = prices.id RETURNING products.id";
     private final String UPDATE_QUERY = "UPDATE products SET (name, producer, price, expiration_date) = (?, ?, ?, ?) WHERE products.id = ?";
 
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    // keeps a multi-row statement far below PostgreSQL limit of 32767 bind parameters
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
     private DataSource dataSource;
+    private final int batchSize;
 
     public ProductDaoImpl(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE);
+    }
+
+    public ProductDaoImpl(DataSource dataSource, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive");
+        }
         this.dataSource = dataSource;
+        this.batchSize = batchSize;
     }
 
     @Override
     public void save(Product product) {
         requireNonNull(product);
-        try (Connection connection = dataSource.getConnection()) {
-            PreparedStatement insertStatement = prepareInsertStatement(product, connection);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insertStatement = prepareInsertStatement(product, connection)) {
             insertStatement.executeUpdate();
             Long id = fetchGeneratedId(insertStatement);
             product.setId(id);
@@ -44,53 +90,390 @@ public class ProductDaoImpl implements ProductDao {
     private PreparedStatement prepareInsertStatement(final Product product, final Connection connection) {
         try {
             PreparedStatement insertStatement = connection.prepareStatement(INSERT_QUERY, PreparedStatement.RETURN_GENERATED_KEYS);
-            insertStatement.setString(1, product.getName());
-            insertStatement.setString(2, product.getProducer());
-            insertStatement.setBigDecimal(3, product.getPrice());
-            insertStatement.setDate(4, Date.valueOf(product.getExpirationDate()));
+            fillInsertStatement(insertStatement, product);
             return insertStatement;
         } catch (SQLException e) {
             throw new DaoOperationException(String.format("Cannot prepare statement for product: %s", product));
         }
     }
 
+    private void fillInsertStatement(PreparedStatement insertStatement, Product product) throws SQLException {
+        insertStatement.setString(1, product.getName());
+        insertStatement.setString(2, product.getProducer());
+        insertStatement.setBigDecimal(3, product.getPrice());
+        insertStatement.setDate(4, Date.valueOf(product.getExpirationDate()));
+    }
+
     private Long fetchGeneratedId(PreparedStatement insertStatement) throws SQLException {
-        ResultSet generatedKeys = insertStatement.getGeneratedKeys();
-        if (generatedKeys.next()) {
-            return generatedKeys.getLong(1);
+        try (ResultSet generatedKeys = insertStatement.getGeneratedKeys()) {
+            if (generatedKeys.next()) {
+                return generatedKeys.getLong(1);
+            } else {
+                throw new DaoOperationException("Can not obtain product ID");
+            }
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Product> products) {
+        requireNonNull(products);
+        products.forEach(Objects::requireNonNull);
+        try (Connection connection = dataSource.getConnection()) {
+            withoutAutoCommit(connection, () -> {
+                try (PreparedStatement insertStatement = connection.prepareStatement(INSERT_QUERY, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                    for (List<Product> batch : partition(new ArrayList<>(products), batchSize)) {
+                        saveBatch(connection, insertStatement, batch);
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new DaoOperationException(String.format("Error saving %d products", products.size()), e);
+        }
+    }
+
+    /**
+     * Inserts one batch of products within a separate transaction. Generated ids are assigned only after the batch
+     * is committed, so products of a rolled back batch stay without ids.
+     */
+    private void saveBatch(Connection connection, PreparedStatement insertStatement, List<Product> batch) throws SQLException {
+        List<Long> ids;
+        try {
+            ids = insertBatch(insertStatement, batch);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).setId(ids.get(i));
+        }
+    }
+
+    private List<Long> insertBatch(PreparedStatement insertStatement, List<Product> batch) throws SQLException {
+        try {
+            for (Product product : batch) {
+                fillInsertStatement(insertStatement, product);
+                insertStatement.addBatch();
+            }
+            insertStatement.executeBatch();
+            return fetchGeneratedIds(insertStatement, batch.size());
+        } catch (SQLException | RuntimeException e) {
+            insertStatement.clearBatch();
+            throw e;
+        }
+    }
+
+    private static <T> List<List<T>> partition(List<T> list, int size) {
+        List<List<T>> partitions = new ArrayList<>((list.size() + size - 1) / size);
+        for (int from = 0; from < list.size(); from += size) {
+            partitions.add(list.subList(from, Math.min(from + size, list.size())));
+        }
+        return partitions;
+    }
+
+    private List<Long> fetchGeneratedIds(PreparedStatement insertStatement, int expectedCount) throws SQLException {
+        List<Long> ids = new ArrayList<>(expectedCount);
+        try (ResultSet generatedKeys = insertStatement.getGeneratedKeys()) {
+            while (generatedKeys.next()) {
+                ids.add(generatedKeys.getLong(1));
+            }
+        }
+        if (ids.size() != expectedCount) {
+            throw new DaoOperationException(String.format("Can not obtain product IDs: expected %d, got %d",
+                    expectedCount, ids.size()));
+        }
+        return ids;
+    }
+
+    @Override
+    public UpsertResult upsertAll(Collection<Product> products) {
+        requireNonNull(products);
+        products.forEach(Objects::requireNonNull);
+        Map<Long, Product> storedProducts = new LinkedHashMap<>();
+        List<Product> newProducts = new ArrayList<>();
+        for (Product product : products) {
+            if (isNull(product.getId())) {
+                newProducts.add(product);
+            } else {
+                storedProducts.put(product.getId(), product);
+            }
+        }
+        List<Long> insertedIds = new ArrayList<>();
+        List<Long> updatedIds = new ArrayList<>();
+        List<Long> generatedIds = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            withoutAutoCommit(connection, () -> {
+                try {
+                    SqlDialect dialect = SqlDialect.of(connection);
+                    int upsertBatchSize = Math.min(batchSize, MAX_ROWS_PER_STATEMENT);
+                    for (List<Product> batch : partition(new ArrayList<>(storedProducts.values()), upsertBatchSize)) {
+                        upsertBatch(connection, dialect, batch, insertedIds, updatedIds);
+                    }
+                    if (dialect == SqlDialect.POSTGRESQL && !insertedIds.isEmpty()) {
+                        advancePostgresSequence(connection, Collections.max(insertedIds));
+                    }
+                    try (PreparedStatement insertStatement = connection.prepareStatement(INSERT_QUERY, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                        for (List<Product> batch : partition(newProducts, batchSize)) {
+                            generatedIds.addAll(insertBatch(insertStatement, batch));
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new DaoOperationException(String.format("Error upserting %d products", products.size()), e);
+        }
+        for (int i = 0; i < newProducts.size(); i++) {
+            newProducts.get(i).setId(generatedIds.get(i));
+        }
+        insertedIds.addAll(generatedIds);
+        return new UpsertResult(insertedIds, updatedIds);
+    }
+
+    private void upsertBatch(Connection connection, SqlDialect dialect, List<Product> batch,
+                             List<Long> insertedIds, List<Long> updatedIds) throws SQLException {
+        if (dialect == SqlDialect.POSTGRESQL) {
+            upsertPostgresBatch(connection, batch, insertedIds, updatedIds);
         } else {
-            throw new DaoOperationException("Can not obtain product ID");
+            mergeH2Batch(connection, batch, insertedIds, updatedIds);
+        }
+    }
+
+    /**
+     * Moves the serial sequence past the largest explicitly inserted id, so the following generated ids do not
+     * collide with it. The sequence is never moved backwards.
+     */
+    private void advancePostgresSequence(Connection connection, long maxInsertedId) throws SQLException {
+        try (PreparedStatement setvalStatement = connection.prepareStatement(POSTGRES_ADVANCE_SEQUENCE_QUERY)) {
+            setvalStatement.setLong(1, maxInsertedId);
+            setvalStatement.executeQuery().close();
+        }
+    }
+
+    private void upsertPostgresBatch(Connection connection, List<Product> batch,
+                                     List<Long> insertedIds, List<Long> updatedIds) throws SQLException {
+        try (PreparedStatement upsertStatement = connection.prepareStatement(
+                String.format(POSTGRES_UPSERT_QUERY_TEMPLATE, valueRows(batch.size())))) {
+            fillUpsertStatement(upsertStatement, batch);
+            try (ResultSet resultSet = upsertStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    long id = resultSet.getLong(1);
+                    if (resultSet.getBoolean(2)) {
+                        insertedIds.add(id);
+                    } else {
+                        updatedIds.add(id);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * H2 MERGE does not tell whether a row was inserted or updated, so existing ids are selected first within the
+     * same transaction.
+     */
+    private void mergeH2Batch(Connection connection, List<Product> batch,
+                              List<Long> insertedIds, List<Long> updatedIds) throws SQLException {
+        Set<Long> existingIds = findExistingIds(connection, batch.stream().map(Product::getId).collect(toList()));
+        try (PreparedStatement mergeStatement = connection.prepareStatement(
+                String.format(H2_MERGE_QUERY_TEMPLATE, valueRows(batch.size())))) {
+            fillUpsertStatement(mergeStatement, batch);
+            mergeStatement.executeUpdate();
+        }
+        for (Product product : batch) {
+            if (existingIds.contains(product.getId())) {
+                updatedIds.add(product.getId());
+            } else {
+                insertedIds.add(product.getId());
+            }
+        }
+    }
+
+    private Set<Long> findExistingIds(Connection connection, List<Long> ids) throws SQLException {
+        try (PreparedStatement selectStatement = connection.prepareStatement(
+                String.format(FIND_EXISTING_IDS_QUERY_TEMPLATE, idParameters(ids)))) {
+            fillIdParameters(selectStatement, ids);
+            Set<Long> existingIds = new HashSet<>();
+            try (ResultSet resultSet = selectStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    existingIds.add(resultSet.getLong(1));
+                }
+            }
+            return existingIds;
+        }
+    }
+
+    private String idParameters(List<Long> ids) {
+        return String.join(", ", Collections.nCopies(ids.size(), "?"));
+    }
+
+    private void fillIdParameters(PreparedStatement statement, List<Long> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            statement.setLong(i + 1, ids.get(i));
+        }
+    }
+
+    private String valueRows(int rowCount) {
+        return String.join(", ", Collections.nCopies(rowCount, "(?, ?, ?, ?, ?)"));
+    }
+
+    private void fillUpsertStatement(PreparedStatement upsertStatement, List<Product> batch) throws SQLException {
+        int index = 1;
+        for (Product product : batch) {
+            upsertStatement.setLong(index++, product.getId());
+            upsertStatement.setString(index++, product.getName());
+            upsertStatement.setString(index++, product.getProducer());
+            upsertStatement.setBigDecimal(index++, product.getPrice());
+            upsertStatement.setDate(index++, Date.valueOf(product.getExpirationDate()));
         }
     }
 
     @Override
     public List<Product> findAll() {
-        try (Connection connection = dataSource.getConnection()) {
-            return fetchAllProducts(connection);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(FIND_ALL_QUERY)) {
+            return fetchProducts(statement);
         } catch (SQLException e) {
             throw new DaoOperationException("Problem while findAll operation", e);
         }
     }
 
-    private List<Product> fetchAllProducts(Connection connection) throws SQLException {
+    private List<Product> fetchProducts(PreparedStatement statement) throws SQLException {
         List<Product> products = new ArrayList<>();
-        PreparedStatement statement = connection.prepareStatement(FIND_ALL_QUERY);
-        ResultSet resultSet = statement.executeQuery();
-        while (resultSet.next()) {
-            products.add(getProductFromRow(resultSet));
+        try (ResultSet resultSet = statement.executeQuery()) {
+            ProductRowMapper rowMapper = ProductRowMapper.forResultSet(resultSet);
+            while (resultSet.next()) {
+                products.add(getProductFromRow(rowMapper, resultSet));
+            }
         }
         return products;
     }
 
-    private Product getProductFromRow(ResultSet resultSet) {
+    @Override
+    public List<Product> findPage(Long afterId, int limit) {
+        checkPageLimit(limit);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(isNull(afterId) ? FIND_FIRST_PAGE_QUERY : FIND_PAGE_QUERY)) {
+            if (isNull(afterId)) {
+                statement.setInt(1, limit);
+            } else {
+                statement.setLong(1, afterId);
+                statement.setInt(2, limit);
+            }
+            return fetchProducts(statement);
+        } catch (SQLException e) {
+            throw new DaoOperationException(String.format("Error finding products page after id = %d", afterId), e);
+        }
+    }
+
+    @Override
+    public List<Product> findPageByCreationTime(LocalDateTime afterCreationTime, Long afterId, int limit) {
+        checkPageLimit(limit);
+        if (isNull(afterCreationTime) != isNull(afterId)) {
+            throw new IllegalArgumentException("Creation time and id of the last product should be both set or both null");
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(isNull(afterId)
+                     ? FIND_FIRST_PAGE_BY_CREATION_TIME_QUERY : FIND_PAGE_BY_CREATION_TIME_QUERY)) {
+            if (isNull(afterId)) {
+                statement.setInt(1, limit);
+            } else {
+                statement.setObject(1, afterCreationTime);
+                statement.setObject(2, afterCreationTime);
+                statement.setLong(3, afterId);
+                statement.setInt(4, limit);
+            }
+            return fetchProducts(statement);
+        } catch (SQLException e) {
+            throw new DaoOperationException(String.format("Error finding products page after creation time = %s, id = %d",
+                    afterCreationTime, afterId), e);
+        }
+    }
+
+    private void checkPageLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit should be positive");
+        }
+    }
+
+    @Override
+    public Stream<Product> streamAll() {
+        return streamAll(DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Auto-commit is turned off because PostgreSQL driver ignores fetch size and reads the whole result set into
+     * memory unless the query is executed within a transaction.
+     */
+    @Override
+    public Stream<Product> streamAll(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size should be positive");
+        }
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement(FIND_ALL_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            ResultSet resultSet = statement.executeQuery();
+            ProductRowMapper rowMapper = ProductRowMapper.forResultSet(resultSet);
+            Connection streamConnection = connection;
+            return StreamSupport.stream(createProductSpliterator(rowMapper, resultSet), false)
+                    .onClose(() -> closeStreamResources(streamConnection, autoCommit, statement, resultSet));
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new DaoOperationException("Error opening products stream", e);
+        }
+    }
+
+    private Spliterator<Product> createProductSpliterator(ProductRowMapper rowMapper, ResultSet resultSet) {
+        return new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Product> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                } catch (SQLException e) {
+                    throw new DaoOperationException("Error reading products stream", e);
+                }
+                action.accept(getProductFromRow(rowMapper, resultSet));
+                return true;
+            }
+        };
+    }
+
+    private void closeStreamResources(Connection connection, boolean autoCommit, PreparedStatement statement,
+                                      ResultSet resultSet) {
+        try (connection; statement; resultSet) {
+            connection.rollback();
+            connection.setAutoCommit(autoCommit);
+        } catch (SQLException e) {
+            throw new DaoOperationException("Error closing products stream", e);
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // the original exception is more important
+            }
+        }
+    }
+
+    private Product getProductFromRow(ProductRowMapper rowMapper, ResultSet resultSet) {
         try {
-            long id = resultSet.getLong("id");
-            String name = resultSet.getString("name");
-            String producer = resultSet.getString("producer");
-            BigDecimal price = resultSet.getBigDecimal("price");
-            LocalDate localDate = resultSet.getDate("expiration_date").toLocalDate();
-            LocalDateTime localDateTime = resultSet.getTimestamp("creation_time").toLocalDateTime();
-            return new Product(id, name, producer, price, localDate, localDateTime);
+            return rowMapper.mapRow(resultSet);
         } catch (SQLException e) {
             throw new DaoOperationException("Cannot parse product from result set", e);
         }
@@ -99,11 +482,11 @@ public class ProductDaoImpl implements ProductDao {
     @Override
     public Product findOne(Long id) {
         requireNonNull(id);
-        try (Connection connection = dataSource.getConnection()) {
-            PreparedStatement findStatement = prepareFindStatement(id, connection);
-            ResultSet resultSet = findStatement.executeQuery();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = prepareFindStatement(id, connection);
+             ResultSet resultSet = statement.executeQuery()) {
             if (resultSet.next()) {
-                return getProductFromRow(resultSet);
+                return getProductFromRow(ProductRowMapper.forResultSet(resultSet), resultSet);
             } else {
                 throw new DaoOperationException(String.format("Product with id = %d does not exist", id));
             }
@@ -125,8 +508,8 @@ public class ProductDaoImpl implements ProductDao {
     @Override
     public void update(Product product) {
         checkProductForUpdate(product);
-        try (Connection connection = dataSource.getConnection()) {
-            PreparedStatement updateStatement = prepareUpdateStatement(product, connection);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement updateStatement = prepareUpdateStatement(product, connection)) {
             checkUpdateStatementResult(updateStatement.executeUpdate(), product.getId());
         } catch (SQLException e) {
             throw new DaoOperationException(String.format("Error updating product: %s", product));
@@ -150,14 +533,179 @@ public class ProductDaoImpl implements ProductDao {
     @Override
     public void remove(Product product) {
         checkProductForUpdate(product);
-        try (Connection connection = dataSource.getConnection()) {
-            PreparedStatement removeStatement = prepareRemoveStatement(product, connection);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement removeStatement = prepareRemoveStatement(product, connection)) {
             checkUpdateStatementResult(removeStatement.executeUpdate(), product.getId());
         } catch (SQLException e) {
             throw new DaoOperationException(String.format("Error removing product: %s", product));
         }
     }
 
+    @Override
+    public BulkUpdateResult removeAll(Collection<Long> ids) {
+        List<Long> uniqueIds = uniqueIds(ids);
+        List<Long> removedIds = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            withoutAutoCommit(connection, () -> {
+                SqlDialect dialect = SqlDialect.of(connection);
+                for (List<Long> batch : partition(uniqueIds, bulkBatchSize(dialect))) {
+                    removedIds.addAll(inTransaction(connection, () -> dialect == SqlDialect.POSTGRESQL
+                            ? removePostgresBatch(connection, batch)
+                            : removeH2Batch(connection, batch)));
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new DaoOperationException(String.format("Error removing %d products", uniqueIds.size()), e);
+        }
+        return toBulkUpdateResult(uniqueIds, removedIds);
+    }
+
+    private Collection<Long> removePostgresBatch(Connection connection, List<Long> batch) throws SQLException {
+        try (PreparedStatement removeStatement = connection.prepareStatement(POSTGRES_REMOVE_ALL_QUERY)) {
+            removeStatement.setArray(1, connection.createArrayOf("bigint", batch.toArray()));
+            return fetchIds(removeStatement);
+        }
+    }
+
+    /**
+     * H2 DELETE cannot return removed rows, so existing ids are selected first within the same transaction.
+     */
+    private Collection<Long> removeH2Batch(Connection connection, List<Long> batch) throws SQLException {
+        Set<Long> existingIds = findExistingIds(connection, batch);
+        try (PreparedStatement removeStatement = connection.prepareStatement(
+                String.format(REMOVE_ALL_QUERY_TEMPLATE, idParameters(batch)))) {
+            fillIdParameters(removeStatement, batch);
+            removeStatement.executeUpdate();
+        }
+        return existingIds;
+    }
+
+    @Override
+    public BulkUpdateResult updatePrices(Map<Long, BigDecimal> prices) {
+        requireNonNull(prices);
+        List<Long> ids = uniqueIds(prices.keySet());
+        List<Long> updatedIds = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            withoutAutoCommit(connection, () -> {
+                SqlDialect dialect = SqlDialect.of(connection);
+                for (List<Long> batch : partition(ids, bulkBatchSize(dialect))) {
+                    updatedIds.addAll(inTransaction(connection, () -> dialect == SqlDialect.POSTGRESQL
+                            ? updatePostgresPrices(connection, batch, prices)
+                            : updatePricesInBatch(connection, batch, prices)));
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new DaoOperationException(String.format("Error updating prices of %d products", ids.size()), e);
+        }
+        return toBulkUpdateResult(ids, updatedIds);
+    }
+
+    private Collection<Long> updatePostgresPrices(Connection connection, List<Long> batch,
+                                                  Map<Long, BigDecimal> prices) throws SQLException {
+        try (PreparedStatement updateStatement = connection.prepareStatement(POSTGRES_UPDATE_PRICES_QUERY)) {
+            updateStatement.setArray(1, connection.createArrayOf("bigint", batch.toArray()));
+            updateStatement.setArray(2, connection.createArrayOf("numeric", batch.stream().map(prices::get).toArray()));
+            return fetchIds(updateStatement);
+        }
+    }
+
+    /**
+     * H2 UPDATE cannot return updated rows, so prices are updated by a JDBC batch that reports an update count
+     * per id.
+     */
+    private Collection<Long> updatePricesInBatch(Connection connection, List<Long> batch,
+                                                 Map<Long, BigDecimal> prices) throws SQLException {
+        try (PreparedStatement updateStatement = connection.prepareStatement(UPDATE_PRICE_QUERY)) {
+            for (Long id : batch) {
+                updateStatement.setBigDecimal(1, prices.get(id));
+                updateStatement.setLong(2, id);
+                updateStatement.addBatch();
+            }
+            int[] updateCounts = updateStatement.executeBatch();
+            List<Long> updatedIds = new ArrayList<>();
+            for (int i = 0; i < updateCounts.length; i++) {
+                if (updateCounts[i] > 0 || updateCounts[i] == PreparedStatement.SUCCESS_NO_INFO) {
+                    updatedIds.add(batch.get(i));
+                }
+            }
+            return updatedIds;
+        }
+    }
+
+    private List<Long> uniqueIds(Collection<Long> ids) {
+        requireNonNull(ids);
+        ids.forEach(Objects::requireNonNull);
+        return new ArrayList<>(new LinkedHashSet<>(ids));
+    }
+
+    /**
+     * PostgreSQL binds a whole batch as one array parameter, while H2 needs a parameter per id.
+     */
+    private int bulkBatchSize(SqlDialect dialect) {
+        return dialect == SqlDialect.POSTGRESQL ? batchSize : Math.min(batchSize, MAX_ROWS_PER_STATEMENT);
+    }
+
+    private Collection<Long> inTransaction(Connection connection, BatchOperation operation) throws SQLException {
+        try {
+            Collection<Long> ids = operation.execute();
+            connection.commit();
+            return ids;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchOperation {
+        Collection<Long> execute() throws SQLException;
+    }
+
+    /**
+     * Runs a piece of work with auto-commit turned off and then restores the previous auto-commit mode, so that
+     * a connection of a data source without a pool is not left in manual commit mode for its next user.
+     */
+    private <T> T withoutAutoCommit(Connection connection, ConnectionWork<T> work) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        T result;
+        try {
+            result = work.execute();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException restoreFailure) {
+                e.addSuppressed(restoreFailure);
+            }
+            throw e;
+        }
+        connection.setAutoCommit(autoCommit);
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface ConnectionWork<T> {
+        T execute() throws SQLException;
+    }
+
+    private List<Long> fetchIds(PreparedStatement statement) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private BulkUpdateResult toBulkUpdateResult(List<Long> requestedIds, Collection<Long> affectedIds) {
+        Set<Long> affectedIdSet = new HashSet<>(affectedIds);
+        Map<Boolean, List<Long>> idsByOutcome = requestedIds.stream().collect(partitioningBy(affectedIdSet::contains));
+        return new BulkUpdateResult(idsByOutcome.get(true), idsByOutcome.get(false));
+    }
+
     private PreparedStatement prepareRemoveStatement(Product product, Connection connection) {
         try {
             PreparedStatement removeStatement = connection.prepareStatement(REMOVE_QUERY);
@@ -0,0 +1,64 @@
+package ua.procamp.dao;
+
+import ua.procamp.exception.DaoOperationException;
+import ua.procamp.model.Product;
+import ua.procamp.util.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * {@link ProductRowMapper} maps rows of the products table to {@link Product} instances. Column indexes are resolved
+ * once per {@link ResultSet} from its metadata, and date columns are read as {@link java.time} types directly, so
+ * mapping a row does not look up columns by name and does not create intermediate {@link java.sql.Date} objects.
+ */
+public class ProductRowMapper implements RowMapper<Product> {
+    private final int idIndex;
+    private final int nameIndex;
+    private final int producerIndex;
+    private final int priceIndex;
+    private final int expirationDateIndex;
+    private final int creationTimeIndex;
+
+    private ProductRowMapper(ResultSetMetaData metaData) throws SQLException {
+        idIndex = findColumnIndex(metaData, "id");
+        nameIndex = findColumnIndex(metaData, "name");
+        producerIndex = findColumnIndex(metaData, "producer");
+        priceIndex = findColumnIndex(metaData, "price");
+        expirationDateIndex = findColumnIndex(metaData, "expiration_date");
+        creationTimeIndex = findColumnIndex(metaData, "creation_time");
+    }
+
+    /**
+     * Creates a mapper for a given result set.
+     *
+     * @param resultSet result set that contains all product columns
+     * @return mapper bound to the column order of the result set
+     */
+    public static ProductRowMapper forResultSet(ResultSet resultSet) throws SQLException {
+        return new ProductRowMapper(resultSet.getMetaData());
+    }
+
+    private static int findColumnIndex(ResultSetMetaData metaData, String columnLabel) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (columnLabel.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        throw new DaoOperationException(String.format("Column %s is missing in the result set", columnLabel));
+    }
+
+    @Override
+    public Product mapRow(ResultSet resultSet) throws SQLException {
+        return new Product(
+                resultSet.getLong(idIndex),
+                resultSet.getString(nameIndex),
+                resultSet.getString(producerIndex),
+                resultSet.getBigDecimal(priceIndex),
+                resultSet.getObject(expirationDateIndex, LocalDate.class),
+                resultSet.getObject(creationTimeIndex, LocalDateTime.class));
+    }
+}
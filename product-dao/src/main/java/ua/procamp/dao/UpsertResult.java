@@ -0,0 +1,27 @@
+package ua.procamp.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * {@link UpsertResult} tells which products were inserted and which existing products were updated by
+ * {@link ProductDao#upsertAll(java.util.Collection)}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UpsertResult {
+    private final List<Long> insertedIds;
+    private final List<Long> updatedIds;
+
+    public int getInsertedCount() {
+        return insertedIds.size();
+    }
+
+    public int getUpdatedCount() {
+        return updatedIds.size();
+    }
+}
@@ -1,35 +1,58 @@
 package ua.procamp;
 
+import ua.procamp.dao.AsyncProductDao;
+import ua.procamp.dao.BulkUpdateResult;
+import ua.procamp.dao.ProductBulkLoader;
 import ua.procamp.dao.ProductDao;
 import ua.procamp.dao.ProductDaoImpl;
+import ua.procamp.dao.UpsertResult;
 import ua.procamp.exception.DaoOperationException;
 import ua.procamp.model.Product;
 import ua.procamp.util.JdbcUtil;
+import ua.procamp.util.pool.PoolConfig;
+import ua.procamp.util.pool.PooledDataSource;
+import ua.procamp.util.bulk.BulkLoadException;
+import ua.procamp.util.bulk.BulkLoadResult;
+import ua.procamp.util.concurrent.DaoExecutor;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.RandomUtils;
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
 @RunWith(JUnit4.class)
 public class ProductDaoTest {
+    private static DataSource h2DataSource;
     private static ProductDao productDao;
 
     @BeforeClass
     public static void init() throws SQLException {
-        DataSource h2DataSource = JdbcUtil.createDefaultInMemoryH2DataSource();
+        h2DataSource = JdbcUtil.createDefaultInMemoryH2DataSource();
         createAccountTable(h2DataSource);
         productDao = new ProductDaoImpl(h2DataSource);
     }
@@ -47,7 +70,8 @@ public class ProductDaoTest {
                     "\n" +
                     "  CONSTRAINT products_pk PRIMARY KEY (id)\n" +
                     ");\n" +
-                    "\n");
+                    "\n" +
+                    "CREATE INDEX IF NOT EXISTS products_creation_time_id_idx ON products (creation_time, id);\n");
         }
     }
 
@@ -87,6 +111,341 @@ public class ProductDaoTest {
         }
     }
 
+    @Test
+    public void testSaveAll() {
+        ProductDao batchProductDao = new ProductDaoImpl(h2DataSource, 3);
+        List<Product> newProducts = generateTestProductList(7);
+
+        int productsCountBeforeInsert = productDao.findAll().size();
+        batchProductDao.saveAll(newProducts);
+        List<Product> products = productDao.findAll();
+
+        assertTrue(newProducts.stream().allMatch(product -> product.getId() != null));
+        assertEquals(newProducts.size(), newProducts.stream().map(Product::getId).distinct().count());
+        assertEquals(productsCountBeforeInsert + newProducts.size(), products.size());
+        assertTrue(products.containsAll(newProducts));
+    }
+
+    @Test
+    public void testSaveAllRollsBackFailedBatchOnly() {
+        ProductDao batchProductDao = new ProductDaoImpl(h2DataSource, 2);
+        List<Product> committedProducts = generateTestProductList(2);
+        Product invalidTestProduct = createInvalidTestProduct();
+        List<Product> failedBatch = List.of(generateTestProduct(), invalidTestProduct);
+        List<Product> newProducts = Stream.concat(committedProducts.stream(), failedBatch.stream())
+                .collect(Collectors.toList());
+
+        int productsCountBeforeInsert = productDao.findAll().size();
+        try {
+            batchProductDao.saveAll(newProducts);
+            fail("Exception was't thrown");
+        } catch (Exception e) {
+            assertEquals(DaoOperationException.class, e.getClass());
+        }
+        List<Product> products = productDao.findAll();
+
+        assertTrue(committedProducts.stream().allMatch(product -> product.getId() != null));
+        assertTrue(failedBatch.stream().allMatch(product -> product.getId() == null));
+        assertEquals(productsCountBeforeInsert + committedProducts.size(), products.size());
+        assertTrue(products.containsAll(committedProducts));
+    }
+
+    @Test
+    public void testUpsertAll() {
+        ProductDao batchProductDao = new ProductDaoImpl(h2DataSource, 2);
+        List<Product> storedProducts = generateTestProductList(3);
+        productDao.saveAll(storedProducts);
+        storedProducts.forEach(product -> product.setPrice(product.getPrice().add(BigDecimal.ONE)));
+        long maxId = productDao.findAll().stream().mapToLong(Product::getId).max().orElse(0);
+        Product productWithNewId = generateTestProduct();
+        productWithNewId.setId(maxId + 100);
+        Product productWithoutId = generateTestProduct();
+        List<Product> upsertedProducts = new ArrayList<>(storedProducts);
+        upsertedProducts.add(productWithNewId);
+        upsertedProducts.add(productWithoutId);
+
+        int productsCountBeforeUpsert = productDao.findAll().size();
+        UpsertResult result = batchProductDao.upsertAll(upsertedProducts);
+        List<Product> products = productDao.findAll();
+
+        assertEquals(storedProducts.size(), result.getUpdatedCount());
+        assertTrue(result.getUpdatedIds().containsAll(storedProducts.stream().map(Product::getId).collect(Collectors.toList())));
+        assertEquals(List.of(productWithNewId.getId(), productWithoutId.getId()), result.getInsertedIds());
+        assertEquals(productsCountBeforeUpsert + 2, products.size());
+        assertTrue(products.containsAll(upsertedProducts));
+        storedProducts.forEach(product ->
+                assertEquals(0, product.getPrice().compareTo(productDao.findOne(product.getId()).getPrice())));
+    }
+
+    @Test
+    public void testUpsertAllRollsBackAllBatchesOnError() {
+        ProductDao batchProductDao = new ProductDaoImpl(h2DataSource, 2);
+        List<Product> storedProducts = generateTestProductList(3);
+        productDao.saveAll(storedProducts);
+        List<BigDecimal> storedPrices = storedProducts.stream().map(Product::getPrice).collect(Collectors.toList());
+        storedProducts.forEach(product -> product.setPrice(product.getPrice().add(BigDecimal.ONE)));
+        Product productWithoutId = generateTestProduct();
+        List<Product> upsertedProducts = new ArrayList<>(storedProducts);
+        upsertedProducts.add(productWithoutId);
+        upsertedProducts.add(createInvalidTestProduct());
+
+        int productsCountBeforeUpsert = productDao.findAll().size();
+        try {
+            batchProductDao.upsertAll(upsertedProducts);
+            fail("Exception was't thrown");
+        } catch (Exception e) {
+            assertEquals(DaoOperationException.class, e.getClass());
+        }
+
+        assertEquals(productsCountBeforeUpsert, productDao.findAll().size());
+        assertNull(productWithoutId.getId());
+        for (int i = 0; i < storedProducts.size(); i++) {
+            assertEquals(0, storedPrices.get(i).compareTo(productDao.findOne(storedProducts.get(i).getId()).getPrice()));
+        }
+    }
+
+    @Test
+    public void testSaveAfterUpsertWithExplicitId() {
+        productDao.save(generateTestProduct());
+        long maxId = productDao.findAll().stream().mapToLong(Product::getId).max().orElse(0);
+        Product productWithNewId = generateTestProduct();
+        productWithNewId.setId(maxId + 10);
+        productDao.upsertAll(List.of(productWithNewId));
+
+        Product savedProduct = generateTestProduct();
+        productDao.save(savedProduct);
+
+        assertTrue(savedProduct.getId() > productWithNewId.getId());
+        assertEquals(productWithNewId, productDao.findOne(productWithNewId.getId()));
+    }
+
+    @Test
+    public void testBulkLoadMatchesSave() {
+        List<Product> loadedProducts = generateTestProductList(25);
+        List<Product> savedProducts = loadedProducts.stream().map(this::copyWithoutId).collect(Collectors.toList());
+
+        long maxIdBeforeInsert = productDao.findAll().stream().mapToLong(Product::getId).max().orElse(0);
+        savedProducts.forEach(productDao::save);
+        BulkLoadResult result = new ProductBulkLoader(h2DataSource).load(loadedProducts);
+        List<Product> insertedProducts = productDao.findAll().stream()
+                .filter(product -> product.getId() > maxIdBeforeInsert)
+                .collect(Collectors.toList());
+        List<Product> bulkLoadedProducts = insertedProducts.stream()
+                .filter(product -> !savedProducts.contains(product))
+                .collect(Collectors.toList());
+
+        assertEquals(loadedProducts.size(), result.getRowCount());
+        assertTrue(loadedProducts.stream().allMatch(product -> product.getId() == null));
+        assertEquals(savedProducts.size() + loadedProducts.size(), insertedProducts.size());
+        assertEquals(toComparableRows(productDao.findAll().stream().filter(savedProducts::contains).collect(Collectors.toList())),
+                toComparableRows(bulkLoadedProducts));
+    }
+
+    @Test
+    public void testBulkLoadRollsBackOnError() {
+        List<Product> loadedProducts = new ArrayList<>(generateTestProductList(3));
+        loadedProducts.add(createInvalidTestProduct());
+
+        int productsCountBeforeInsert = productDao.findAll().size();
+        try {
+            new ProductBulkLoader(h2DataSource).load(loadedProducts);
+            fail("Exception was't thrown");
+        } catch (Exception e) {
+            assertEquals(BulkLoadException.class, e.getClass());
+        }
+
+        assertEquals(productsCountBeforeInsert, productDao.findAll().size());
+    }
+
+    @Test
+    public void testRemoveAll() {
+        ProductDao batchProductDao = new ProductDaoImpl(h2DataSource, 2);
+        List<Product> storedProducts = generateTestProductList(3);
+        productDao.saveAll(storedProducts);
+        long maxId = productDao.findAll().stream().mapToLong(Product::getId).max().orElse(0);
+        List<Long> storedIds = storedProducts.stream().map(Product::getId).collect(Collectors.toList());
+        List<Long> ids = new ArrayList<>(storedIds);
+        ids.add(maxId + 100);
+
+        int productsCountBeforeRemove = productDao.findAll().size();
+        BulkUpdateResult result = batchProductDao.removeAll(ids);
+        List<Product> products = productDao.findAll();
+
+        assertEquals(storedIds, result.getAffectedIds());
+        assertEquals(List.of(maxId + 100), result.getMissingIds());
+        assertEquals(productsCountBeforeRemove - storedProducts.size(), products.size());
+        assertTrue(storedProducts.stream().noneMatch(products::contains));
+    }
+
+    @Test
+    public void testUpdatePrices() {
+        ProductDao batchProductDao = new ProductDaoImpl(h2DataSource, 2);
+        List<Product> storedProducts = generateTestProductList(3);
+        productDao.saveAll(storedProducts);
+        long maxId = productDao.findAll().stream().mapToLong(Product::getId).max().orElse(0);
+        Map<Long, BigDecimal> prices = new LinkedHashMap<>();
+        storedProducts.forEach(product -> prices.put(product.getId(), product.getPrice().add(BigDecimal.TEN)));
+        prices.put(maxId + 100, BigDecimal.ONE);
+
+        BulkUpdateResult result = batchProductDao.updatePrices(prices);
+
+        assertEquals(storedProducts.stream().map(Product::getId).collect(Collectors.toList()), result.getAffectedIds());
+        assertEquals(List.of(maxId + 100), result.getMissingIds());
+        storedProducts.forEach(product ->
+                assertEquals(0, prices.get(product.getId()).compareTo(productDao.findOne(product.getId()).getPrice())));
+    }
+
+    @Test
+    public void testBulkOperationsRestoreAutoCommit() throws SQLException {
+        try (Connection connection = h2DataSource.getConnection()) {
+            ProductDao sharedConnectionProductDao = new ProductDaoImpl(createSharedConnectionDataSource(connection), 2);
+            List<Product> products = generateTestProductList(3);
+
+            sharedConnectionProductDao.saveAll(products);
+            boolean autoCommitAfterSaveAll = connection.getAutoCommit();
+            sharedConnectionProductDao.upsertAll(products);
+            boolean autoCommitAfterUpsertAll = connection.getAutoCommit();
+            sharedConnectionProductDao.updatePrices(Map.of(products.get(0).getId(), BigDecimal.TEN));
+            boolean autoCommitAfterUpdatePrices = connection.getAutoCommit();
+            try (Stream<Product> productStream = sharedConnectionProductDao.streamAll()) {
+                productStream.findFirst();
+            }
+            boolean autoCommitAfterStreamAll = connection.getAutoCommit();
+            sharedConnectionProductDao.removeAll(products.stream().map(Product::getId).collect(Collectors.toList()));
+            boolean autoCommitAfterRemoveAll = connection.getAutoCommit();
+
+            assertTrue(autoCommitAfterSaveAll);
+            assertTrue(autoCommitAfterUpsertAll);
+            assertTrue(autoCommitAfterUpdatePrices);
+            assertTrue(autoCommitAfterStreamAll);
+            assertTrue(autoCommitAfterRemoveAll);
+        }
+    }
+
+    @Test
+    public void testStatementsAreReusedOverPool() throws SQLException {
+        List<String> preparedQueries = new CopyOnWriteArrayList<>();
+        try (PooledDataSource pooledDataSource = JdbcUtil.createPooledDataSource(
+                createPrepareCountingDataSource(preparedQueries), PoolConfig.builder().maxPoolSize(1).build())) {
+            ProductDao pooledProductDao = new ProductDaoImpl(pooledDataSource);
+            Product product = generateTestProduct();
+
+            pooledProductDao.save(product);
+            pooledProductDao.save(generateTestProduct());
+            for (int i = 0; i < 3; i++) {
+                pooledProductDao.findOne(product.getId());
+                try (Stream<Product> productStream = pooledProductDao.streamAll(2)) {
+                    productStream.findFirst();
+                }
+            }
+        }
+
+        assertEquals(3, preparedQueries.size());
+        assertEquals(3, Set.copyOf(preparedQueries).size());
+    }
+
+    /**
+     * Returns connections to the products database that record SQL of every physically prepared statement
+     */
+    private DataSource createPrepareCountingDataSource(List<String> preparedQueries) {
+        return new JdbcDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = h2DataSource.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            if (method.getName().equals("prepareStatement")) {
+                                preparedQueries.add((String) args[0]);
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+    }
+
+    /**
+     * Returns the same connection to every caller and ignores its closing, the way a data source without a pool
+     * hands out a connection that keeps its state
+     */
+    private DataSource createSharedConnectionDataSource(Connection connection) {
+        Connection sharedConnection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        return new JdbcDataSource() {
+            @Override
+            public Connection getConnection() {
+                return sharedConnection;
+            }
+        };
+    }
+
+    @Test
+    public void testAsyncSaveAndFindOne() {
+        List<Product> newProducts = generateTestProductList(20);
+
+        try (DaoExecutor executor = DaoExecutor.create(4)) {
+            AsyncProductDao asyncProductDao = new AsyncProductDao(productDao, executor);
+            CompletableFuture.allOf(newProducts.stream()
+                    .map(asyncProductDao::save)
+                    .toArray(CompletableFuture[]::new)).join();
+            List<Product> foundProducts = newProducts.stream()
+                    .map(product -> asyncProductDao.findOne(product.getId()))
+                    .collect(Collectors.toList()).stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+
+            assertEquals(newProducts, foundProducts);
+        }
+    }
+
+    @Test
+    public void testAsyncSaveInvalidProduct() {
+        Product invalidTestProduct = createInvalidTestProduct();
+
+        try (DaoExecutor executor = DaoExecutor.create(4)) {
+            CompletableFuture<Void> saved = new AsyncProductDao(productDao, executor).save(invalidTestProduct);
+            try {
+                saved.join();
+                fail("Exception was't thrown");
+            } catch (CompletionException e) {
+                assertEquals(DaoOperationException.class, e.getCause().getClass());
+            }
+        }
+    }
+
+    private Product copyWithoutId(Product product) {
+        return Product.builder()
+                .name(product.getName())
+                .producer(product.getProducer())
+                .price(product.getPrice())
+                .expirationDate(product.getExpirationDate())
+                .build();
+    }
+
+    private List<String> toComparableRows(List<Product> products) {
+        return products.stream()
+                .map(product -> String.join("|", product.getName(), product.getProducer(),
+                        product.getPrice().stripTrailingZeros().toPlainString(), product.getExpirationDate().toString()))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private List<Product> generateTestProductList(int size) {
+        return Stream.generate(this::generateTestProduct).limit(size).collect(Collectors.toList());
+    }
+
     private Product createTestFantaProduct() {
         return Product.builder()
                 .name("Fanta")
@@ -117,6 +476,56 @@ public class ProductDaoTest {
 
     }
 
+    @Test
+    public void testStreamAll() {
+        productDao.saveAll(generateTestProductList(5));
+        List<Product> products = productDao.findAll();
+
+        List<Product> streamedProducts;
+        try (Stream<Product> productStream = productDao.streamAll(2)) {
+            streamedProducts = productStream.collect(Collectors.toList());
+        }
+
+        assertEquals(products.size(), streamedProducts.size());
+        assertTrue(streamedProducts.containsAll(products));
+        assertTrue(deepEquals(products, streamedProducts));
+    }
+
+    @Test
+    public void testFindPage() {
+        productDao.saveAll(generateTestProductList(5));
+        List<Product> products = productDao.findAll();
+        products.sort(Comparator.comparing(Product::getId));
+
+        List<Product> pagedProducts = new ArrayList<>();
+        List<Product> page = productDao.findPage(null, 2);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 2);
+            pagedProducts.addAll(page);
+            page = productDao.findPage(page.get(page.size() - 1).getId(), 2);
+        }
+
+        assertEquals(products, pagedProducts);
+    }
+
+    @Test
+    public void testFindPageByCreationTime() {
+        productDao.saveAll(generateTestProductList(5));
+        List<Product> products = productDao.findAll();
+        products.sort(Comparator.comparing(Product::getCreationTime).thenComparing(Product::getId));
+
+        List<Product> pagedProducts = new ArrayList<>();
+        List<Product> page = productDao.findPageByCreationTime(null, null, 3);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 3);
+            pagedProducts.addAll(page);
+            Product last = page.get(page.size() - 1);
+            page = productDao.findPageByCreationTime(last.getCreationTime(), last.getId(), 3);
+        }
+
+        assertEquals(products, pagedProducts);
+    }
+
     private List<Product> createTestProductList() {
         return List.of(
                 Product.builder()